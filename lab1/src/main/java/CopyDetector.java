@@ -1,15 +1,24 @@
 import java.io.IOException;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public class CopyDetector {
 
-    private static final int INTERVAL = 1;
-    private static final int TIMEOUT = 2;
+    // миллисекунды
+    private static final long INTERVAL = 1000;
+    private static final long TIMEOUT = 2000;
+    private static final long PRECISION = 100;
+    private static final int PORT = 4446;
+    private static final String USAGE = "Использование: java CopyDetector {multicast-адрес} [--interval мс] [--timeout мс] [--precision мс]"
+            + " [--phi [--phi-suspect порог] [--phi-dead порог] [--phi-window N] [--phi-pause мс]]"
+            + " [--nio [--node-id hex] [--meta текст]]"
+            + " [--gossip порт [--seed хост:порт]... [--multicast-bootstrap] [--indirect k]]";
 
     private final DatagramSocket socket = new DatagramSocket();
     private final MulticastSocket multicastSocket;
@@ -17,12 +26,38 @@ public class CopyDetector {
     private final InetAddress group;
     private final int port;
 
-    private final Map<String, Long> liveNodes = new ConcurrentHashMap<>();
+    private final long interval;
+    private final long timeout;
+    // null - фиксированный timeout
+    private PhiAccrual phi;
+
+    // узлы по адресу, их дедлайны в колесе и изменения для подписчиков (из него же печатается список)
+    private final Map<String, Node> liveNodes = new ConcurrentHashMap<>();
+    private final ExpiryWheel<Node> expiry;
+    private final Membership membership = new Membership();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3);
 
+    private static class Node extends ExpiryWheel.Entry {
+        final String address;
+        PhiAccrual.Window window;
+        boolean suspected = false;
+
+        Node(String address) {
+            this.address = address;
+        }
+    }
+
     public CopyDetector(String multicastAddrStr) throws IOException {
+        this(multicastAddrStr, INTERVAL, TIMEOUT, PRECISION);
+    }
+
+    // interval - период HELLO, timeout - сколько ждать узел, precision - шаг колеса, все в миллисекундах
+    public CopyDetector(String multicastAddrStr, long interval, long timeout, long precision) throws IOException {
+        this.interval = interval;
+        this.timeout = timeout;
+        this.expiry = new ExpiryWheel<>(precision, timeout, now());
         this.group = InetAddress.getByName(multicastAddrStr);
-        this.port = 4446;
+        this.port = PORT;
         this.multicastSocket = new MulticastSocket(port);
 
         if (group instanceof Inet6Address) {
@@ -45,10 +80,19 @@ public class CopyDetector {
         }
     }
 
+    // вместо фиксированного timeout: подозрение и удаление по порогам phi
+    public void setPhiAccrual(PhiAccrual phi) {
+        this.phi = phi;
+    }
+
+    public Membership membership() {
+        return membership;
+    }
+
     public void start() {
-        scheduler.scheduleAtFixedRate(this::sendMessage, 0, INTERVAL, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::sendMessage, 0, interval, TimeUnit.MILLISECONDS);
         scheduler.execute(this::listenForMessages);
-        scheduler.scheduleAtFixedRate(this::checkForTimeouts, 0, TIMEOUT, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::checkForTimeouts, 0, expiry.tickMillis(), TimeUnit.MILLISECONDS);
     }
 
     private void sendMessage() {
@@ -74,12 +118,8 @@ public class CopyDetector {
                 String senderFullAddress = senderIP + ":" + packet.getPort();
                 //System.out.println("Received from " + senderFullAddress);
 
-                if (message.startsWith("HELLO ")) {
-
-                    Long retValue = liveNodes.put(senderFullAddress, System.currentTimeMillis());
-                    if (retValue == null)
-                        printLiveNodes();
-                }
+                if (message.startsWith("HELLO "))
+                    refresh(senderFullAddress);
             } catch (IOException e) {
                 if (!multicastSocket.isClosed())
                     System.err.println(e.getMessage());
@@ -88,36 +128,173 @@ public class CopyDetector {
         }
     }
 
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    // перенос дедлайна узла; новый узел и снятое подозрение попадают в membership
+    private void refresh(String address) {
+        // перенос под блокировкой ключа, чтобы не разойтись с одновременным истечением
+        liveNodes.compute(address, (key, node) -> {
+            if (node == null) {
+                node = new Node(key);
+                membership.alive(key);
+            }
+            long now = now();
+            if (phi == null) {
+                expiry.schedule(node, now + timeout);
+                return node;
+            }
+            if (node.window == null)
+                node.window = phi.newWindow();
+            node.window.record(now);
+            if (node.suspected)
+                membership.alive(key);
+            node.suspected = false;
+            expiry.schedule(node, phi.suspectDeadline(node.window));
+            return node;
+        });
+    }
+
     private void checkForTimeouts() {
-        long now = System.currentTimeMillis();
-        boolean retValue = liveNodes.entrySet().removeIf(entry -> (now - entry.getValue()) > TIMEOUT * 1000L);
-        if (retValue)
+        long now = now();
+        for (Node node : expiry.advance(now)) {
+            // узел мог успеть продлиться между advance и удалением
+            liveNodes.computeIfPresent(node.address, (key, current) -> {
+                if (current != node || current.isScheduled())
+                    return current;
+                // с phi сначала подозрение, удаление - когда phi дойдёт до второго порога
+                if (phi != null && !current.suspected) {
+                    current.suspected = true;
+                    expiry.schedule(current, phi.deadDeadline(current.window));
+                    membership.suspected(key);
+                    return current;
+                }
+                membership.left(key);
+                return null;
+            });
+        }
+        // всё, что пришло и ушло за шаг колеса, - одной пачкой и одним выводом
+        if (membership.flush() != null)
             printLiveNodes();
     }
 
     private void printLiveNodes() {
-        List<String> sorted = new ArrayList<>(liveNodes.keySet());
-        Collections.sort(sorted);
+        Membership.Snapshot snapshot = membership.snapshot();
         System.out.println("Текущий список живых узлов:");
-        for (String addr : sorted)
-            System.out.println("  - " + addr);
+        for (String addr : snapshot.nodes())
+            System.out.println("  - " + addr + suspicionLevel(addr) + (snapshot.suspected().contains(addr) ? " (подозревается)" : ""));
         System.out.println();
     }
 
+    // текущий phi узла; окно читается под блокировкой ключа, как и меняется в refresh
+    private String suspicionLevel(String address) {
+        if (phi == null)
+            return "";
+        String[] level = { "" };
+        long now = now();
+        liveNodes.computeIfPresent(address, (key, node) -> {
+            if (node.window != null)
+                level[0] = String.format(" phi %.2f", phi.phi(node.window, now));
+            return node;
+        });
+        return level[0];
+    }
+
     public void stop() {
         scheduler.shutdown();
         multicastSocket.close();
+        membership.close();
     }
 
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.err.println("Использование: java CopyDetector {multicast-адрес}");
+            System.err.println(USAGE);
             return;
         }
         String multicastAddr = args[0];
+        long interval = INTERVAL;
+        long timeout = TIMEOUT;
+        long precision = PRECISION;
+        boolean nio = false;
+        long nodeId = ThreadLocalRandom.current().nextLong();
+        String meta = "";
+        int gossipPort = -1;
+        List<InetSocketAddress> seeds = new ArrayList<>();
+        boolean multicastBootstrap = false;
+        int indirect = 3;
+        boolean phi = false;
+        double phiSuspect = 5;
+        double phiDead = 8;
+        int phiWindow = 100;
+        long phiPause = 0;
+        try {
+            for (int i = 1; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--interval" -> interval = Long.parseLong(args[++i]);
+                    case "--timeout" -> timeout = Long.parseLong(args[++i]);
+                    case "--precision" -> precision = Long.parseLong(args[++i]);
+                    case "--nio" -> nio = true;
+                    case "--node-id" -> nodeId = Long.parseUnsignedLong(args[++i], 16);
+                    case "--meta" -> meta = args[++i];
+                    case "--gossip" -> gossipPort = Integer.parseInt(args[++i]);
+                    case "--seed" -> {
+                        String seed = args[++i];
+                        int colon = seed.lastIndexOf(':');
+                        seeds.add(new InetSocketAddress(seed.substring(0, colon), Integer.parseInt(seed.substring(colon + 1))));
+                    }
+                    case "--multicast-bootstrap" -> multicastBootstrap = true;
+                    case "--indirect" -> indirect = Integer.parseInt(args[++i]);
+                    case "--phi" -> phi = true;
+                    case "--phi-suspect" -> phiSuspect = Double.parseDouble(args[++i]);
+                    case "--phi-dead" -> phiDead = Double.parseDouble(args[++i]);
+                    case "--phi-window" -> phiWindow = Integer.parseInt(args[++i]);
+                    case "--phi-pause" -> phiPause = Long.parseLong(args[++i]);
+                    default -> {
+                        System.err.println("Неизвестный параметр: " + args[i]);
+                        return;
+                    }
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            System.err.println("Некорректное значение параметра: " + e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
 
+        // в gossip подозрение выносят проверки PING, а не поток HELLO, окну phi там нечего мерить
+        if (phi && gossipPort >= 0) {
+            System.err.println("--phi не сочетается с --gossip");
+            return;
+        }
+        PhiAccrual detector;
         try {
-            CopyDetector app = new CopyDetector(multicastAddr);
+            detector = phi ? new PhiAccrual(phiSuspect, phiDead, phiWindow, interval, phiPause) : null;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+        try {
+            // interval - период проверки, timeout - сколько держится неопровергнутое подозрение
+            if (gossipPort >= 0) {
+                GossipDetector app = new GossipDetector(gossipPort, seeds,
+                        multicastBootstrap ? new InetSocketAddress(multicastAddr, PORT) : null,
+                        interval, Math.max(interval / 3, 1), timeout, indirect, nodeId);
+                app.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(app::stop));
+                return;
+            }
+            if (nio) {
+                NioCopyDetector app = new NioCopyDetector(multicastAddr, PORT, interval, timeout, precision,
+                        nodeId, meta.getBytes(StandardCharsets.UTF_8));
+                app.setPhiAccrual(detector);
+                app.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(app::stop));
+                return;
+            }
+            CopyDetector app = new CopyDetector(multicastAddr, interval, timeout, precision);
+            app.setPhiAccrual(detector);
             app.start();
 
             Runtime.getRuntime().addShutdownHook(new Thread(app::stop));
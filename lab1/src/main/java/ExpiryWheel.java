@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// хешированное колесо таймеров: продление и отмена за O(1) (записи встроены в списки ячеек),
+// продвижение - по одной ячейке на тик; срабатывание не позже чем через tick после дедлайна
+class ExpiryWheel<E extends ExpiryWheel.Entry> {
+
+    // запись колеса; наследник хранит свои данные, колесо - только ссылки и дедлайн
+    static class Entry {
+        private Entry prev;
+        private Entry next;
+        private long deadline;
+        private long deadlineTick;
+
+        long deadline() {
+            return deadline;
+        }
+
+        boolean isScheduled() {
+            return prev != null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Entry[] slots;
+    private final int mask;
+    private long currentTick;
+
+    // ячеек - степень двойки не меньше horizon / tick, чтобы обычный дедлайн не ходил лишние круги
+    ExpiryWheel(long tickMillis, long horizonMillis, long nowMillis) {
+        this.tickMillis = Math.max(tickMillis, 1);
+        int wanted = (int) Math.min(1 << 20, Math.max(64, 2 * horizonMillis / this.tickMillis));
+        int size = Integer.highestOneBit(wanted - 1) << 1;
+        this.slots = new Entry[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; ++i) {
+            Entry head = new Entry();
+            head.prev = head;
+            head.next = head;
+            slots[i] = head;
+        }
+        this.currentTick = nowMillis / this.tickMillis;
+    }
+
+    long tickMillis() {
+        return tickMillis;
+    }
+
+    // постановка или перенос записи
+    synchronized void schedule(E scheduled, long deadlineMillis) {
+        Entry entry = scheduled;
+        unlink(entry);
+        entry.deadline = deadlineMillis;
+        // округление вверх: раньше дедлайна запись не сработает
+        entry.deadlineTick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        Entry head = slots[(int) (entry.deadlineTick & mask)];
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    synchronized void cancel(E entry) {
+        unlink(entry);
+    }
+
+    private static void unlink(Entry entry) {
+        if (entry.prev == null)
+            return;
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    // снимает с колеса всё, чей тик наступил; обратные вызовы - на стороне вызывающего, вне блокировки
+    @SuppressWarnings("unchecked")
+    synchronized List<E> advance(long nowMillis) {
+        List<E> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        if (targetTick <= currentTick)
+            return expired;
+        // после долгой паузы достаточно одного оборота
+        long from = targetTick - currentTick > slots.length ? targetTick - slots.length + 1 : currentTick + 1;
+        for (long tick = from; tick <= targetTick; ++tick) {
+            Entry head = slots[(int) (tick & mask)];
+            Entry entry = head.next;
+            while (entry != head) {
+                Entry next = entry.next;
+                if (entry.deadlineTick <= targetTick) {
+                    unlink(entry);
+                    expired.add((E) entry);
+                }
+                entry = next;
+            }
+        }
+        currentTick = targetTick;
+        return expired;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,580 @@
+import java.io.IOException;
+import java.net.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+// членство в духе SWIM поверх unicast UDP: раз в period проверяется один случайный узел (PING),
+// без ответа за ackTimeout - через k других (PING_REQ), без ответа к концу периода - подозрение;
+// изменения членства едут на любых сообщениях, подозрение опровергается ростом инкарнации.
+// multicast нужен только для первого знакомства, если нет --seed.
+// для подписчиков: JOINED - узел стал живым, SUSPECT - подозрение, LEFT - подтверждённая смерть; пачка раз в период
+public class GossipDetector {
+    // "SWIM"
+    static final int MAGIC = 0x5357494D;
+    static final byte VERSION = 1;
+
+    static final byte PING = 1;
+    static final byte ACK = 2;
+    static final byte PING_REQ = 3;
+    // ответ на знакомство: всё известное членство, без постановки в очередь распространения
+    static final byte SYNC = 4;
+
+    static final byte ALIVE = 0;
+    static final byte SUSPECT = 1;
+    static final byte DEAD = 2;
+
+    private static final int MAX_PACKET = 1400;
+    // id, инкарнация, состояние, адрес IPv6 с длиной и портом
+    private static final int UPDATE_MAX_SIZE = Long.BYTES + Integer.BYTES + 1 + 1 + 16 + Short.BYTES;
+    // сколько раз каждое изменение уходит с сообщениями: множитель * log2(размер группы)
+    private static final int RETRANSMIT_MULTIPLIER = 3;
+    // пока узел один, знакомство повторяется раз в столько периодов
+    private static final int JOIN_RETRY_PERIODS = 5;
+
+    private final int port;
+    private final List<InetSocketAddress> seeds;
+    private final InetSocketAddress bootstrapGroup;
+    private final long period;
+    private final long ackTimeout;
+    private final long suspicionTimeout;
+    private final int indirectProbes;
+    private final long nodeId;
+    private int incarnation = 0;
+    private boolean quiet = false;
+
+    private final LongNodeMap<Member> members = new LongNodeMap<>();
+    // живые и подозреваемые, по id - для печати без сортировки
+    private final TreeSet<Member> liveMembers = new TreeSet<>((a, b) -> Long.compareUnsigned(a.id, b.id));
+    // порядок обхода: перемешивается на каждом круге, так что каждый узел проверяется раз в круг
+    private final List<Member> probeOrder = new ArrayList<>();
+    private int probeIndex = 0;
+    private final ArrayList<Update> updates = new ArrayList<>();
+    private final ExpiryWheel<Member> timers;
+    // узел для подписчиков - "id адрес", как в NioCopyDetector
+    private final Membership membership = new Membership();
+
+    // текущая проверка
+    private Member probeTarget;
+    private int probeSeq;
+    private boolean probeAcked = true;
+    private boolean indirectSent = false;
+    private long probeStart;
+    private int nextSeq = 1;
+    // PING, отправленные по чужому PING_REQ: свой seq -> кому и с каким seq вернуть ACK
+    private final Map<Integer, Relay> relays = new HashMap<>();
+
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_PACKET);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_PACKET);
+    private DatagramChannel channel;
+    private DatagramChannel bootstrapChannel;
+    private Selector selector;
+    private Thread loop;
+
+    // читаются харнессом из других потоков
+    private volatile int liveCount = 0;
+    private volatile long sent = 0;
+    private volatile long received = 0;
+
+    private static class Member extends ExpiryWheel.Entry {
+        final long id;
+        InetSocketAddress address;
+        String key;
+        int incarnation;
+        byte state = ALIVE;
+
+        Member(long id) {
+            this.id = id;
+        }
+    }
+
+    private static class Update {
+        final Member member;
+        int transmissions;
+
+        Update(Member member, int transmissions) {
+            this.member = member;
+            this.transmissions = transmissions;
+        }
+    }
+
+    private record Relay(InetSocketAddress requester, int seq, long targetId, long expiresAt) {
+    }
+
+    // period, ackTimeout и suspicionTimeout в миллисекундах
+    public GossipDetector(int port, List<InetSocketAddress> seeds, InetSocketAddress bootstrapGroup,
+                   long period, long ackTimeout, long suspicionTimeout, int indirectProbes, long nodeId) {
+        this.port = port;
+        this.seeds = seeds;
+        this.bootstrapGroup = bootstrapGroup;
+        this.period = period;
+        this.ackTimeout = ackTimeout;
+        this.suspicionTimeout = suspicionTimeout;
+        this.indirectProbes = indirectProbes;
+        this.nodeId = nodeId;
+        this.timers = new ExpiryWheel<>(Math.max(period / 10, 1), suspicionTimeout, now());
+    }
+
+    void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    public Membership membership() {
+        return membership;
+    }
+
+    long nodeId() {
+        return nodeId;
+    }
+
+    // живые и подозреваемые узлы кроме себя
+    int liveCount() {
+        return liveCount;
+    }
+
+    long sent() {
+        return sent;
+    }
+
+    long received() {
+        return received;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+
+        if (bootstrapGroup != null) {
+            NetworkInterface nif = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+            for (NetworkInterface candidate : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (candidate.isUp() && candidate.supportsMulticast() && !candidate.isLoopback()) {
+                    nif = candidate;
+                    break;
+                }
+            }
+            bootstrapChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+            bootstrapChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            bootstrapChannel.bind(new InetSocketAddress(bootstrapGroup.getPort()));
+            bootstrapChannel.join(bootstrapGroup.getAddress(), nif);
+            bootstrapChannel.configureBlocking(false);
+            bootstrapChannel.register(selector, SelectionKey.OP_READ);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+        }
+
+        loop = new Thread(this::run, "gossip-" + port);
+        loop.start();
+    }
+
+    public void stop() {
+        if (loop != null)
+            loop.interrupt();
+        try {
+            if (selector != null)
+                selector.close();
+            if (channel != null)
+                channel.close();
+            if (bootstrapChannel != null)
+                bootstrapChannel.close();
+            membership.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private void run() {
+        long nextPeriod = now();
+        long periods = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = now();
+                boolean changed = false;
+                if (now >= nextPeriod) {
+                    changed |= finishProbe();
+                    if (liveCount == 0 && periods % JOIN_RETRY_PERIODS == 0)
+                        join();
+                    startProbe(now);
+                    // всё, что изменилось за период, - одной пачкой
+                    membership.flush();
+                    ++periods;
+                    nextPeriod = now + period;
+                } else if (!probeAcked && !indirectSent && now - probeStart >= ackTimeout) {
+                    probeIndirect();
+                }
+
+                long wakeAt = Math.min(nextPeriod, now + timers.tickMillis());
+                if (!probeAcked && !indirectSent)
+                    wakeAt = Math.min(wakeAt, probeStart + ackTimeout);
+                selector.select(Math.max(wakeAt - now, 1));
+                selector.selectedKeys().clear();
+
+                changed |= drain(channel);
+                if (bootstrapChannel != null)
+                    changed |= drain(bootstrapChannel);
+                for (Member member : timers.advance(now()))
+                    changed |= onTimer(member);
+                if (!relays.isEmpty())
+                    relays.values().removeIf(relay -> relay.expiresAt() < now());
+
+                if (changed) {
+                    liveCount = liveMembers.size();
+                    if (!quiet)
+                        printLiveNodes();
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // остановлен через stop()
+        } catch (IOException e) {
+            if (channel.isOpen())
+                System.err.println(e.getMessage());
+        }
+    }
+
+    // знакомство: PING всем seed-узлам и в multicast-группу; ответивший ACK станет членом
+    private void join() {
+        for (InetSocketAddress seed : seeds)
+            send(seed, PING, 0, 0, null);
+        if (bootstrapGroup != null)
+            send(bootstrapGroup, PING, 0, 0, null);
+    }
+
+    // итог прошлой проверки; true - членство изменилось
+    private boolean finishProbe() {
+        if (probeAcked || probeTarget == null || probeTarget.state == DEAD)
+            return false;
+        if (probeTarget.state == SUSPECT)
+            return false;
+        suspect(probeTarget, probeTarget.incarnation, true);
+        return true;
+    }
+
+    private void startProbe(long now) {
+        probeTarget = nextProbeTarget();
+        probeAcked = probeTarget == null;
+        indirectSent = false;
+        if (probeTarget == null)
+            return;
+        probeSeq = nextSeq++;
+        probeStart = now;
+        send(probeTarget.address, PING, probeSeq, probeTarget.id, null);
+    }
+
+    private Member nextProbeTarget() {
+        for (int attempts = 0; attempts <= probeOrder.size(); ++attempts) {
+            if (probeIndex >= probeOrder.size()) {
+                probeOrder.removeIf(member -> member.state == DEAD);
+                Collections.shuffle(probeOrder);
+                probeIndex = 0;
+                if (probeOrder.isEmpty())
+                    return null;
+            }
+            Member member = probeOrder.get(probeIndex++);
+            if (member.state != DEAD)
+                return member;
+        }
+        return null;
+    }
+
+    // k случайных посредников, кроме самой цели
+    private void probeIndirect() {
+        indirectSent = true;
+        List<Member> candidates = new ArrayList<>();
+        for (Member member : probeOrder) {
+            if (member != probeTarget && member.state == ALIVE)
+                candidates.add(member);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < indirectProbes && !candidates.isEmpty(); ++i) {
+            Member relay = candidates.remove(random.nextInt(candidates.size()));
+            send(relay.address, PING_REQ, probeSeq, probeTarget.id, probeTarget.address);
+        }
+    }
+
+    private boolean onTimer(Member member) {
+        if (member.state == SUSPECT) {
+            // подозрение не опровергнуто за suspicionTimeout
+            member.state = DEAD;
+            liveMembers.remove(member);
+            membership.left(member.key);
+            enqueue(member);
+            // надгробие: старые ALIVE с той же инкарнацией не воскресят узел
+            timers.schedule(member, now() + suspicionTimeout * 2);
+            return true;
+        }
+        if (member.state == DEAD)
+            members.remove(member.id);
+        return false;
+    }
+
+    private void suspect(Member member, int incarnation, boolean spread) {
+        member.state = SUSPECT;
+        member.incarnation = incarnation;
+        membership.suspected(member.key);
+        timers.schedule(member, now() + suspicionTimeout);
+        if (spread)
+            enqueue(member);
+    }
+
+    // ставит изменение в очередь распространения, вытесняя прежнее про тот же узел
+    private void enqueue(Member member) {
+        updates.removeIf(update -> update.member == member);
+        int groupSize = probeOrder.size() + 1;
+        updates.add(new Update(member, RETRANSMIT_MULTIPLIER * (32 - Integer.numberOfLeadingZeros(groupSize))));
+    }
+
+    private void enqueueSelf() {
+        Member self = new Member(nodeId);
+        self.incarnation = incarnation;
+        self.address = new InetSocketAddress(0);
+        updates.removeIf(update -> update.member.id == nodeId);
+        updates.add(new Update(self, RETRANSMIT_MULTIPLIER * (32 - Integer.numberOfLeadingZeros(probeOrder.size() + 1))));
+    }
+
+    private boolean drain(DatagramChannel source) throws IOException {
+        boolean changed = false;
+        SocketAddress sender;
+        while ((sender = source.receive(receiveBuffer.clear())) != null) {
+            receiveBuffer.flip();
+            ++received;
+            try {
+                changed |= onMessage((InetSocketAddress) sender);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // обрезанный или чужой пакет
+            }
+        }
+        return changed;
+    }
+
+    private boolean onMessage(InetSocketAddress sender) {
+        ByteBuffer packet = receiveBuffer;
+        if (packet.getInt() != MAGIC || packet.get() != VERSION)
+            return false;
+        byte type = packet.get();
+        long senderId = packet.getLong();
+        int senderIncarnation = packet.getInt();
+        int seq = packet.getInt();
+        long targetId = packet.getLong();
+        InetSocketAddress target = type == PING_REQ ? readAddress(packet) : null;
+        // свой же multicast
+        if (senderId == nodeId)
+            return false;
+
+        // сам факт сообщения - свежие сведения об отправителе, адрес берётся из пакета
+        boolean changed = apply(senderId, senderIncarnation, ALIVE, sender, true);
+        int count = packet.get() & 0xFF;
+        for (int i = 0; i < count; ++i) {
+            long id = packet.getLong();
+            int incarnation = packet.getInt();
+            byte state = packet.get();
+            InetSocketAddress address = readAddress(packet);
+            changed |= apply(id, incarnation, state, id == senderId ? sender : address, type != SYNC);
+        }
+
+        switch (type) {
+            case PING -> {
+                send(sender, ACK, seq, nodeId, null);
+                // seq 0 - знакомство: новичок не дождётся, пока старые изменения снова пойдут по кругу
+                if (seq == 0)
+                    sendSync(sender);
+            }
+            case ACK -> {
+                if (!probeAcked && seq == probeSeq && probeTarget != null && targetId == probeTarget.id) {
+                    probeAcked = true;
+                } else {
+                    Relay relay = relays.remove(seq);
+                    if (relay != null && relay.targetId() == targetId)
+                        send(relay.requester(), ACK, relay.seq(), targetId, null);
+                }
+            }
+            case PING_REQ -> {
+                int relaySeq = nextSeq++;
+                relays.put(relaySeq, new Relay(sender, seq, targetId, now() + period));
+                send(target, PING, relaySeq, targetId, null);
+            }
+            default -> {
+            }
+        }
+        return changed;
+    }
+
+    // правила SWIM: ALIVE перекрывает подозрение только с большей инкарнацией,
+    // SUSPECT перекрывает ALIVE той же инкарнации, DEAD окончателен до новой инкарнации
+    // spread - ставить ли применённое изменение в очередь распространения
+    private boolean apply(long id, int incarnation, byte state, InetSocketAddress address, boolean spread) {
+        if (id == nodeId) {
+            if (state != ALIVE && incarnation >= this.incarnation) {
+                // опровержение: про себя нельзя верить слухам
+                this.incarnation = incarnation + 1;
+                enqueueSelf();
+            }
+            return false;
+        }
+
+        Member member = members.get(id);
+        if (member == null) {
+            if (state == DEAD)
+                return false;
+            member = new Member(id);
+            member.address = address;
+            member.key = key(id, address);
+            member.incarnation = incarnation;
+            members.put(id, member);
+            probeOrder.add(member);
+            liveMembers.add(member);
+            if (state == SUSPECT) {
+                suspect(member, incarnation, spread);
+            } else {
+                membership.alive(member.key);
+                if (spread)
+                    enqueue(member);
+            }
+            return true;
+        }
+
+        boolean applies = switch (state) {
+            case ALIVE -> incarnation > member.incarnation;
+            case SUSPECT -> member.state == DEAD ? incarnation > member.incarnation
+                    : member.state == ALIVE ? incarnation >= member.incarnation : incarnation > member.incarnation;
+            case DEAD -> member.state != DEAD || incarnation > member.incarnation;
+            default -> false;
+        };
+        if (!applies)
+            return false;
+
+        if (!address.equals(member.address)) {
+            // для подписчиков смена адреса - уход и приход
+            if (member.state != DEAD)
+                membership.left(member.key);
+            member.address = address;
+            member.key = key(id, address);
+        }
+        if (state != DEAD && member.state == DEAD) {
+            // вернулся с новой инкарнацией; из порядка обхода мог ещё не выпасть
+            if (!probeOrder.contains(member))
+                probeOrder.add(member);
+            liveMembers.add(member);
+        }
+        if (state == ALIVE) {
+            member.state = ALIVE;
+            member.incarnation = incarnation;
+            membership.alive(member.key);
+            timers.cancel(member);
+            if (spread)
+                enqueue(member);
+        } else if (state == SUSPECT) {
+            suspect(member, incarnation, spread);
+        } else {
+            member.state = DEAD;
+            member.incarnation = incarnation;
+            liveMembers.remove(member);
+            membership.left(member.key);
+            if (spread)
+                enqueue(member);
+            timers.schedule(member, now() + suspicionTimeout * 2);
+        }
+        return true;
+    }
+
+    private void send(InetSocketAddress to, byte type, int seq, long targetId, InetSocketAddress target) {
+        ByteBuffer packet = sendBuffer.clear();
+        packet.putInt(MAGIC).put(VERSION).put(type).putLong(nodeId).putInt(incarnation).putInt(seq).putLong(targetId);
+        if (type == PING_REQ)
+            writeAddress(packet, target);
+
+        // свежие изменения первыми, пока помещаются
+        int countPosition = packet.position();
+        packet.put((byte) 0);
+        int count = 0;
+        for (int i = updates.size() - 1; i >= 0 && count < 255; --i) {
+            Update update = updates.get(i);
+            if (packet.remaining() < UPDATE_MAX_SIZE)
+                break;
+            writeUpdate(packet, update.member);
+            ++count;
+            if (--update.transmissions == 0)
+                updates.remove(i);
+        }
+        packet.put(countPosition, (byte) count);
+        packet.flip();
+        try {
+            channel.send(packet, to);
+            ++sent;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // всё живое членство пачками по размеру пакета
+    private void sendSync(InetSocketAddress to) {
+        Iterator<Member> it = liveMembers.iterator();
+        do {
+            ByteBuffer packet = sendBuffer.clear();
+            packet.putInt(MAGIC).put(VERSION).put(SYNC).putLong(nodeId).putInt(incarnation).putInt(0).putLong(0);
+            int countPosition = packet.position();
+            packet.put((byte) 0);
+            int count = 0;
+            while (it.hasNext() && count < 255 && packet.remaining() >= UPDATE_MAX_SIZE) {
+                Member member = it.next();
+                if (member.address.getPort() == to.getPort() && member.address.getAddress().equals(to.getAddress()))
+                    continue;
+                writeUpdate(packet, member);
+                ++count;
+            }
+            packet.put(countPosition, (byte) count).flip();
+            try {
+                channel.send(packet, to);
+                ++sent;
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        } while (it.hasNext());
+    }
+
+    private static String key(long id, InetSocketAddress address) {
+        return String.format("%016x %s", id, address);
+    }
+
+    private static void writeUpdate(ByteBuffer packet, Member member) {
+        packet.putLong(member.id).putInt(member.incarnation).put(member.state);
+        writeAddress(packet, member.address);
+    }
+
+    private static void writeAddress(ByteBuffer packet, InetSocketAddress address) {
+        byte[] bytes = address.getAddress().getAddress();
+        packet.put((byte) bytes.length).put(bytes).putShort((short) address.getPort());
+    }
+
+    private static InetSocketAddress readAddress(ByteBuffer packet) {
+        int length = packet.get();
+        if (length != 4 && length != 16)
+            throw new IllegalArgumentException("Некорректная длина адреса: " + length);
+        byte[] bytes = new byte[length];
+        packet.get(bytes);
+        int port = packet.getShort() & 0xFFFF;
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private void printLiveNodes() {
+        System.out.println("Текущий список живых узлов (инкарнация " + incarnation + "):");
+        for (Member member : liveMembers) {
+            System.out.printf("  - %016x %s%s%n", member.id, member.address, member.state == SUSPECT ? " (подозревается)" : "");
+        }
+        System.out.println();
+    }
+}
\ No newline at end of file
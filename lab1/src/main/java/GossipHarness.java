@@ -0,0 +1,95 @@
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// проверка режима --gossip на одной машине: N узлов на петле с портами basePort..basePort+N-1,
+// все знакомятся через первый; печатает время схождения членства, время обнаружения
+// остановленного узла всеми остальными и число сообщений на узел в секунду
+public class GossipHarness {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Использование: java GossipHarness {узлов} [период мс] [базовый порт]");
+            return;
+        }
+        int count = Integer.parseInt(args[0]);
+        long period = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        int basePort = args.length > 2 ? Integer.parseInt(args[2]) : 15000;
+        long suspicionTimeout = period * 5;
+
+        InetSocketAddress seed = new InetSocketAddress("127.0.0.1", basePort);
+        List<GossipDetector> nodes = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            GossipDetector node = new GossipDetector(basePort + i, i == 0 ? List.of() : List.of(seed), null,
+                    period, Math.max(period / 3, 1), suspicionTimeout, 3, ThreadLocalRandom.current().nextLong());
+            node.setQuiet(true);
+            node.start();
+            nodes.add(node);
+        }
+
+        if (!await(nodes, count - 1, period * 200)) {
+            report("схождение не достигнуто", nodes, count - 1);
+            stop(nodes);
+            return;
+        }
+        double converged = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Узлов: %d, период %d мс: все видят всех через %.2f с%n", count, period, converged);
+
+        // счётчики сообщений в установившемся режиме
+        long sent0 = 0;
+        for (GossipDetector node : nodes)
+            sent0 += node.sent();
+        long window = System.nanoTime();
+        Thread.sleep(period * 20);
+        long sent1 = 0;
+        for (GossipDetector node : nodes)
+            sent1 += node.sent();
+        double seconds = (System.nanoTime() - window) / 1e9;
+        System.out.printf("Сообщений на узел: %.1f в секунду%n", (sent1 - sent0) / seconds / count);
+
+        GossipDetector victim = nodes.remove(nodes.size() - 1);
+        victim.stop();
+        long stopped = System.nanoTime();
+        if (await(nodes, count - 2, period * 200))
+            System.out.printf("Остановленный узел исключён всеми через %.2f с (тайм-аут подозрения %d мс)%n",
+                    (System.nanoTime() - stopped) / 1e9, suspicionTimeout);
+        else
+            report("остановленный узел исключён не всеми", nodes, count - 2);
+        stop(nodes);
+    }
+
+    private static boolean await(List<GossipDetector> nodes, int expected, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (System.nanoTime() < deadline) {
+            boolean done = true;
+            for (GossipDetector node : nodes)
+                done &= node.liveCount() == expected;
+            if (done)
+                return true;
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static void report(String message, List<GossipDetector> nodes, int expected) {
+        int behind = 0;
+        for (GossipDetector node : nodes) {
+            if (node.liveCount() != expected)
+                ++behind;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (GossipDetector node : nodes) {
+            min = Math.min(min, node.liveCount());
+            max = Math.max(max, node.liveCount());
+        }
+        System.out.println("Ошибка: " + message + ", расходятся " + behind + " из " + nodes.size()
+                + " (видят от " + min + " до " + max + " из " + expected + ")");
+    }
+
+    private static void stop(List<GossipDetector> nodes) {
+        for (GossipDetector node : nodes)
+            node.stop();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+// открытая адресация с линейным пробированием по ключу long, без упаковки ключей в Long;
+// не потокобезопасна - принадлежит одному потоку приёма
+class LongNodeMap<V> {
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+    private int mask;
+
+    LongNodeMap() {
+        this(64);
+    }
+
+    LongNodeMap(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 4) - 1) << 1;
+        this.keys = new long[size];
+        this.values = new Object[size];
+        this.mask = size - 1;
+    }
+
+    // перемешивание битов (финализатор splitmix64), чтобы последовательные id не ложились подряд
+    private static int hash(long key) {
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (key ^ (key >>> 31));
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key)
+                return (V) values[i];
+        }
+        return null;
+    }
+
+    void put(long key, V value) {
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        // заполнение не больше половины: короткие цепочки пробирования
+        if (++size > (mask + 1) / 2)
+            resize();
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key)
+                break;
+        }
+        if (values[i] == null)
+            return null;
+        V removed = (V) values[i];
+        values[i] = null;
+        --size;
+        // сдвиг следующих записей цепочки назад, вместо надгробий
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            // запись в j можно перенести в дыру i, если i лежит между её домашней ячейкой и j
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+        return removed;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] == null)
+                continue;
+            int j = hash(oldKeys[i]) & mask;
+            while (values[j] != null)
+                j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+// членство для встраивания (балансировщик и т.п.): детектор отмечает изменения по мере обнаружения,
+// наружу они уходят пачками - не чаще одного flush(), то есть раза за шаг колеса.
+// каждая пачка получает следующую версию; подписчик, у которого версия перескочила
+// (не успевал разбирать, пачки для него отброшены), перечитывает snapshot() и продолжает с его версии
+public class Membership implements Flow.Publisher<Membership.Batch> {
+    public enum Kind { JOINED, SUSPECT, RECOVERED, LEFT }
+
+    public record Change(Kind kind, String node) {}
+
+    public record Batch(long version, List<Change> changes) {}
+
+    // nodes отсортированы, suspected - их подмножество; оба неизменяемы
+    public record Snapshot(long version, List<String> nodes, Set<String> suspected) {}
+
+    // узел -> подозревается ли: сейчас и на момент последней пачки
+    private final Map<String, Boolean> current = new HashMap<>();
+    private final NavigableMap<String, Boolean> published = new TreeMap<>();
+    // узлы, тронутые с последней пачки; несколько изменений одного узла схлопываются в разницу состояний
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private volatile long version = 0;
+    private volatile Snapshot snapshot = new Snapshot(0, List.of(), Set.of());
+    private final SubmissionPublisher<Batch> publisher = new SubmissionPublisher<>();
+
+    // узел появился или с него снято подозрение
+    synchronized void alive(String node) {
+        current.put(node, false);
+        dirty.add(node);
+    }
+
+    synchronized void suspected(String node) {
+        current.put(node, true);
+        dirty.add(node);
+    }
+
+    synchronized void left(String node) {
+        current.remove(node);
+        dirty.add(node);
+    }
+
+    // пачка накопленных изменений; null - с прошлого раза ничего не поменялось.
+    // подписчикам не блокируясь: медленному пачка не достаётся, он увидит пропуск версии
+    synchronized Batch flush() {
+        if (dirty.isEmpty())
+            return null;
+        List<Change> changes = new ArrayList<>();
+        for (String node : dirty) {
+            Boolean before = published.get(node);
+            Boolean after = current.get(node);
+            if (after == null) {
+                if (before != null) {
+                    published.remove(node);
+                    changes.add(new Change(Kind.LEFT, node));
+                }
+                continue;
+            }
+            if (before == null)
+                changes.add(new Change(Kind.JOINED, node));
+            if (after && (before == null || !before))
+                changes.add(new Change(Kind.SUSPECT, node));
+            else if (!after && before != null && before)
+                changes.add(new Change(Kind.RECOVERED, node));
+            published.put(node, after);
+        }
+        dirty.clear();
+        // узел пришёл и ушёл внутри одной пачки - снаружи его не было
+        if (changes.isEmpty())
+            return null;
+        Batch batch = new Batch(version + 1, List.copyOf(changes));
+        version = batch.version();
+        publisher.offer(batch, (subscriber, dropped) -> false);
+        return batch;
+    }
+
+    // собирается не чаще одного раза на версию, между пачками отдаётся один и тот же объект
+    public Snapshot snapshot() {
+        Snapshot cached = snapshot;
+        if (cached.version() == version)
+            return cached;
+        synchronized (this) {
+            if (snapshot.version() != version) {
+                Set<String> suspected = new HashSet<>();
+                published.forEach((node, suspect) -> {
+                    if (suspect)
+                        suspected.add(node);
+                });
+                snapshot = new Snapshot(version, List.copyOf(published.keySet()), Set.copyOf(suspected));
+            }
+            return snapshot;
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+
+    // пачки приходят в потоке исполнителя SubmissionPublisher, по порядку версий
+    @Override
+    public void subscribe(Flow.Subscriber<? super Batch> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    void close() {
+        publisher.close();
+    }
+}
\ No newline at end of file
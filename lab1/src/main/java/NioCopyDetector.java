@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.TreeSet;
+
+// вариант CopyDetector на DatagramChannel: двоичный HELLO фиксированного формата, узлы по id типа long;
+// приём, отправка и истечение в одном потоке (select с таймаутом до ближайшего события),
+// на пакет ничего не выделяется - буфер приёма один на всё время работы
+public class NioCopyDetector {
+    // "LAB1"
+    static final int MAGIC = 0x4C414231;
+    static final byte VERSION = 1;
+    // magic, версия, флаги (резерв), длина метаданных, id узла, инкарнация
+    static final int HEADER_SIZE = 4 + 1 + 1 + 2 + 8 + 4;
+    static final int MAX_METADATA = 1024;
+    private static final int RECEIVE_BUFFER = 4 << 20;
+
+    private final InetAddress group;
+    private final InetSocketAddress groupAddress;
+    private final long interval;
+    private final long timeout;
+    // растёт при каждом перезапуске, по ней отбрасываются пакеты прошлой жизни узла
+    private final int incarnation;
+
+    private final ExpiryWheel<Node> expiry;
+    // null - фиксированный timeout
+    private PhiAccrual phi;
+    private final LongNodeMap<Node> liveNodes = new LongNodeMap<>();
+    private final TreeSet<Node> sortedNodes = new TreeSet<>((a, b) -> Long.compareUnsigned(a.id, b.id));
+    // узел для подписчиков - "id адрес": смена адреса при том же id выглядит как уход и приход
+    private final Membership membership = new Membership();
+
+    private final ByteBuffer heartbeat;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_METADATA);
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread loop;
+
+    private long received = 0;
+    private long malformed = 0;
+
+    private static class Node extends ExpiryWheel.Entry {
+        final long id;
+        int incarnation;
+        SocketAddress address;
+        String key;
+        byte[] metadata = new byte[0];
+        PhiAccrual.Window window;
+        boolean suspected = false;
+
+        Node(long id) {
+            this.id = id;
+        }
+    }
+
+    public NioCopyDetector(String multicastAddrStr, int port, long interval, long timeout, long precision,
+                    long nodeId, byte[] metadata) throws IOException {
+        if (metadata.length > MAX_METADATA)
+            throw new IllegalArgumentException("Метаданные длиннее " + MAX_METADATA + " байт");
+        this.group = InetAddress.getByName(multicastAddrStr);
+        this.groupAddress = new InetSocketAddress(group, port);
+        this.interval = interval;
+        this.timeout = timeout;
+        this.incarnation = (int) (System.currentTimeMillis() / 1000);
+        this.expiry = new ExpiryWheel<>(precision, timeout, now());
+
+        // пакет собирается один раз, при отправке только перематывается
+        heartbeat = ByteBuffer.allocateDirect(HEADER_SIZE + metadata.length);
+        heartbeat.putInt(MAGIC).put(VERSION).put((byte) 0).putShort((short) metadata.length)
+                .putLong(nodeId).putInt(incarnation).put(metadata).flip();
+    }
+
+    public void setPhiAccrual(PhiAccrual phi) {
+        this.phi = phi;
+    }
+
+    public Membership membership() {
+        return membership;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    long received() {
+        return received;
+    }
+
+    long malformed() {
+        return malformed;
+    }
+
+    // первый поднятый интерфейс с multicast и адресом нужного семейства; петля - только если других нет
+    private static NetworkInterface multicastInterface(boolean ipv6) throws SocketException {
+        NetworkInterface loopback = null;
+        for (NetworkInterface nif : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!nif.isUp() || !nif.supportsMulticast() || nif.getDisplayName().startsWith("VirtualBox"))
+                continue;
+            Enumeration<InetAddress> addresses = nif.getInetAddresses();
+            for (InetAddress addr : Collections.list(addresses)) {
+                if ((addr instanceof Inet6Address) == ipv6) {
+                    if (!nif.isLoopback())
+                        return nif;
+                    loopback = nif;
+                }
+            }
+        }
+        if (loopback == null)
+            throw new SocketException("Нет интерфейса с поддержкой multicast");
+        return loopback;
+    }
+
+    public void start() throws IOException {
+        boolean ipv6 = group instanceof Inet6Address;
+        NetworkInterface nif = multicastInterface(ipv6);
+        channel = DatagramChannel.open(ipv6 ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER);
+        channel.bind(new InetSocketAddress(groupAddress.getPort()));
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+        channel.join(group, nif);
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+
+        loop = new Thread(this::run, "heartbeat-loop");
+        loop.start();
+    }
+
+    private void run() {
+        long nextSend = now();
+        long nextFlush = nextSend;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = now();
+                if (now >= nextSend) {
+                    send();
+                    nextSend = now + interval;
+                }
+                selector.select(Math.max(Math.min(nextSend - now, expiry.tickMillis()), 1));
+                selector.selectedKeys().clear();
+
+                now = now();
+                drain(now);
+                for (Node node : expiry.advance(now)) {
+                    if (phi != null && !node.suspected) {
+                        node.suspected = true;
+                        expiry.schedule(node, phi.deadDeadline(node.window));
+                        membership.suspected(node.key);
+                        continue;
+                    }
+                    liveNodes.remove(node.id);
+                    sortedNodes.remove(node);
+                    membership.left(node.key);
+                }
+                // одна пачка и один вывод за шаг колеса, сколько бы узлов ни пришло или ушло
+                if (now >= nextFlush) {
+                    nextFlush = now + expiry.tickMillis();
+                    if (membership.flush() != null)
+                        printLiveNodes();
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // остановлен через stop()
+        } catch (IOException e) {
+            if (channel.isOpen())
+                System.err.println(e.getMessage());
+        }
+    }
+
+    private void send() {
+        try {
+            channel.send(heartbeat.rewind(), groupAddress);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // все накопившиеся пакеты; новые узлы, смена адреса и снятое подозрение попадают в membership.
+    // receive() возвращает закешированный InetSocketAddress, пока отправитель не меняется
+    private void drain(long now) throws IOException {
+        SocketAddress sender;
+        while ((sender = channel.receive(receiveBuffer.clear())) != null) {
+            receiveBuffer.flip();
+            onHeartbeat(sender, now);
+        }
+    }
+
+    private void onHeartbeat(SocketAddress sender, long now) {
+        ByteBuffer packet = receiveBuffer;
+        int metadataLength = packet.remaining() >= HEADER_SIZE ? packet.getShort(6) & 0xFFFF : -1;
+        if (metadataLength < 0 || packet.getInt(0) != MAGIC || packet.get(4) != VERSION
+                || packet.remaining() != HEADER_SIZE + metadataLength) {
+            ++malformed;
+            return;
+        }
+        ++received;
+        long id = packet.getLong(8);
+        int incarnation = packet.getInt(16);
+
+        Node node = liveNodes.get(id);
+        if (node == null) {
+            node = new Node(id);
+            node.incarnation = incarnation;
+            liveNodes.put(id, node);
+            sortedNodes.add(node);
+        } else if (incarnation < node.incarnation) {
+            // опоздавший пакет прошлой жизни узла
+            return;
+        }
+        node.incarnation = incarnation;
+        if (node.address != sender && !sender.equals(node.address)) {
+            if (node.key != null)
+                membership.left(node.key);
+            node.address = sender;
+            node.key = String.format("%016x %s", id, sender);
+            membership.alive(node.key);
+        }
+        if (!sameMetadata(node.metadata, packet, metadataLength)) {
+            node.metadata = new byte[metadataLength];
+            packet.get(HEADER_SIZE, node.metadata);
+        }
+        if (phi == null) {
+            expiry.schedule(node, now + timeout);
+            return;
+        }
+        if (node.window == null)
+            node.window = phi.newWindow();
+        node.window.record(now);
+        if (node.suspected)
+            membership.alive(node.key);
+        node.suspected = false;
+        expiry.schedule(node, phi.suspectDeadline(node.window));
+    }
+
+    private static boolean sameMetadata(byte[] metadata, ByteBuffer packet, int length) {
+        if (metadata.length != length)
+            return false;
+        for (int i = 0; i < length; ++i) {
+            if (metadata[i] != packet.get(HEADER_SIZE + i))
+                return false;
+        }
+        return true;
+    }
+
+    private void printLiveNodes() {
+        System.out.println("Текущий список живых узлов (" + sortedNodes.size() + "):");
+        long now = now();
+        for (Node node : sortedNodes) {
+            System.out.printf("  - %016x %s%s%s%s%n", node.id, node.address,
+                    node.metadata.length > 0 ? " " + new String(node.metadata, StandardCharsets.UTF_8) : "",
+                    phi != null && node.window != null ? String.format(" phi %.2f", phi.phi(node.window, now)) : "",
+                    node.suspected ? " (подозревается)" : "");
+        }
+        System.out.println();
+    }
+
+    public void stop() {
+        if (loop != null)
+            loop.interrupt();
+        try {
+            if (selector != null)
+                selector.close();
+            if (channel != null)
+                channel.close();
+            membership.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
\ No newline at end of file
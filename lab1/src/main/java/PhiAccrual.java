@@ -0,0 +1,136 @@
+// адаптивный детектор отказов (phi accrual, Hayashibara и др.): по окну интервалов между HELLO
+// оценивается нормальное распределение, phi = -log10(вероятность, что HELLO ещё придёт так поздно);
+// для колеса таймеров нужен не phi, а момент, когда он достигнет порога, - он считается обращением формулы;
+// сам phi выводится в списке узлов как уровень подозрения
+class PhiAccrual {
+    // выше порога вероятность неотличима от нуля в double
+    static final double MAX_THRESHOLD = 100;
+
+    private final double suspectThreshold;
+    private final double deadThreshold;
+    private final int windowSize;
+    private final long expectedInterval;
+    // нижняя граница отклонения: на идеально ровном канале окно дало бы нулевую дисперсию
+    private final long minStdDeviation;
+    // допустимая пауза (GC, планировщик) сверх среднего интервала
+    private final long acceptablePause;
+
+    PhiAccrual(double suspectThreshold, double deadThreshold, int windowSize, long expectedInterval, long acceptablePause) {
+        if (!(suspectThreshold > 0 && suspectThreshold <= MAX_THRESHOLD))
+            throw new IllegalArgumentException("Порог подозрения должен быть в (0, " + MAX_THRESHOLD + "]: " + suspectThreshold);
+        if (!(deadThreshold >= suspectThreshold && deadThreshold <= MAX_THRESHOLD))
+            throw new IllegalArgumentException("Порог удаления должен быть не меньше порога подозрения и не больше "
+                    + MAX_THRESHOLD + ": " + deadThreshold);
+        if (windowSize < 2)
+            throw new IllegalArgumentException("Окно должно быть не меньше 2 интервалов: " + windowSize);
+        if (expectedInterval < 1)
+            throw new IllegalArgumentException("Интервал должен быть положительным: " + expectedInterval);
+        if (acceptablePause < 0)
+            throw new IllegalArgumentException("Допустимая пауза не может быть отрицательной: " + acceptablePause);
+        this.suspectThreshold = suspectThreshold;
+        this.deadThreshold = deadThreshold;
+        this.windowSize = windowSize;
+        this.expectedInterval = expectedInterval;
+        this.minStdDeviation = Math.max(expectedInterval / 10, 1);
+        this.acceptablePause = acceptablePause;
+    }
+
+    // окно интервалов одного узла: кольцевой буфер long и бегущие суммы, без упаковки и пересчёта
+    static class Window {
+        private final long[] intervals;
+        private int head = 0;
+        private int count = 0;
+        private long sum = 0;
+        private long sumSquares = 0;
+        private long lastArrival = -1;
+
+        private Window(int size) {
+            this.intervals = new long[size];
+        }
+
+        private void add(long interval) {
+            if (count == intervals.length) {
+                long old = intervals[head];
+                sum -= old;
+                sumSquares -= old * old;
+            } else {
+                ++count;
+            }
+            intervals[head] = interval;
+            head = (head + 1) % intervals.length;
+            sum += interval;
+            sumSquares += interval * interval;
+        }
+
+        // момент прихода HELLO, миллисекунды
+        void record(long now) {
+            if (lastArrival >= 0)
+                add(now - lastArrival);
+            lastArrival = now;
+        }
+
+        long lastArrival() {
+            return lastArrival;
+        }
+
+        double mean() {
+            return (double) sum / count;
+        }
+
+        double variance() {
+            double mean = mean();
+            return Math.max((double) sumSquares / count - mean * mean, 0);
+        }
+    }
+
+    // новое окно сразу с двумя интервалами вокруг ожидаемого, чтобы первые HELLO не давали мгновенного подозрения
+    Window newWindow() {
+        Window window = new Window(windowSize);
+        window.add(expectedInterval - expectedInterval / 4);
+        window.add(expectedInterval + expectedInterval / 4);
+        return window;
+    }
+
+    private double mean(Window window) {
+        return window.mean() + acceptablePause;
+    }
+
+    private double stdDeviation(Window window) {
+        return Math.max(Math.sqrt(window.variance()), minStdDeviation);
+    }
+
+    // логистическая аппроксимация хвоста нормального распределения (как в Akka): P(X > y) = 1 / (1 + e^exponent(y))
+    private static double exponent(double y) {
+        return y * (1.5976 + 0.070566 * y * y);
+    }
+
+    double phi(Window window, long now) {
+        double y = (now - window.lastArrival() - mean(window)) / stdDeviation(window);
+        double e = Math.exp(-exponent(y));
+        return y > 0 ? -Math.log10(e / (1 + e)) : -Math.log10(1 - 1 / (1 + e));
+    }
+
+    long suspectDeadline(Window window) {
+        return deadline(window, suspectThreshold);
+    }
+
+    long deadDeadline(Window window) {
+        return deadline(window, deadThreshold);
+    }
+
+    // момент, когда phi достигнет порога: из 10^-phi = e / (1 + e) получаем y * (1.5976 + 0.070566 y^2) = ln(10^phi - 1),
+    // кубика монотонна, корень - несколькими шагами Ньютона; начало - ближайший из корней линейного и кубического
+    // слагаемых (оба по модулю не меньше искомого), при больших порогах линейный в разы дальше
+    private long deadline(Window window, double threshold) {
+        double target = Math.log(Math.pow(10, threshold) - 1);
+        double y = target / 1.5976;
+        double cubic = Math.cbrt(target / 0.070566);
+        if (Math.abs(cubic) < Math.abs(y))
+            y = cubic;
+        for (int i = 0; i < 8; ++i) {
+            double f = exponent(y) - target;
+            y -= f / (1.5976 + 3 * 0.070566 * y * y);
+        }
+        return window.lastArrival() + (long) Math.ceil(mean(window) + y * stdDeviation(window));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiryWheelTest {
+    private static class Node extends ExpiryWheel.Entry {
+        final String name;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    private static List<String> names(List<Node> nodes) {
+        List<String> names = new ArrayList<>();
+        for (Node node : nodes)
+            names.add(node.name);
+        return names;
+    }
+
+    @Test
+    void entryExpiresNotBeforeDeadlineAndNotLaterThanOneTick() {
+        ExpiryWheel<Node> wheel = new ExpiryWheel<>(10, 1000, 0);
+        Node node = new Node("a");
+        wheel.schedule(node, 105);
+        assertTrue(node.isScheduled());
+        assertEquals(105, node.deadline());
+
+        assertTrue(wheel.advance(104).isEmpty());
+        assertEquals(List.of("a"), names(wheel.advance(110)));
+        assertFalse(node.isScheduled());
+        assertTrue(wheel.advance(200).isEmpty());
+    }
+
+    // продление переносит запись, а не добавляет вторую
+    @Test
+    void rescheduleMovesEntry() {
+        ExpiryWheel<Node> wheel = new ExpiryWheel<>(10, 1000, 0);
+        Node node = new Node("a");
+        wheel.schedule(node, 50);
+        wheel.schedule(node, 300);
+
+        assertTrue(wheel.advance(100).isEmpty());
+        assertEquals(List.of("a"), names(wheel.advance(300)));
+        assertTrue(wheel.advance(1000).isEmpty());
+    }
+
+    @Test
+    void cancelledEntryNeverExpires() {
+        ExpiryWheel<Node> wheel = new ExpiryWheel<>(10, 1000, 0);
+        Node node = new Node("a");
+        wheel.schedule(node, 50);
+        wheel.cancel(node);
+        assertFalse(node.isScheduled());
+        wheel.cancel(node);
+
+        assertTrue(wheel.advance(1000).isEmpty());
+    }
+
+    // дедлайн в прошлом срабатывает на ближайшем тике
+    @Test
+    void pastDeadlineExpiresOnNextTick() {
+        ExpiryWheel<Node> wheel = new ExpiryWheel<>(10, 1000, 500);
+        Node node = new Node("a");
+        wheel.schedule(node, 100);
+
+        assertTrue(wheel.advance(505).isEmpty());
+        assertEquals(List.of("a"), names(wheel.advance(510)));
+    }
+
+    // дедлайн дальше оборота колеса попадает в ту же ячейку, что и ближний, но срабатывает в свой круг
+    @Test
+    void deadlineBeyondOneRevolutionWaitsForItsRound() {
+        ExpiryWheel<Node> wheel = new ExpiryWheel<>(1, 32, 0);
+        Node near = new Node("near");
+        Node far = new Node("far");
+        wheel.schedule(near, 10);
+        wheel.schedule(far, 10 + 64 * 3);
+
+        assertEquals(List.of("near"), names(wheel.advance(10)));
+        for (long now = 11; now < 10 + 64 * 3; ++now)
+            assertTrue(wheel.advance(now).isEmpty(), "at " + now);
+        assertEquals(List.of("far"), names(wheel.advance(10 + 64 * 3)));
+    }
+
+    // после паузы длиннее оборота срабатывает всё просроченное, в том числе из пропущенных кругов
+    @Test
+    void longPauseExpiresEverything() {
+        ExpiryWheel<Node> wheel = new ExpiryWheel<>(1, 32, 0);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            Node node = new Node("n" + i);
+            wheel.schedule(node, 1 + i * 7);
+            nodes.add(node);
+        }
+
+        assertEquals(200, wheel.advance(10_000).size());
+        for (Node node : nodes)
+            assertFalse(node.isScheduled());
+    }
+
+    @Test
+    void tickIsAtLeastOneMillisecond() {
+        assertEquals(1, new ExpiryWheel<Node>(0, 100, 0).tickMillis());
+    }
+}
\ No newline at end of file
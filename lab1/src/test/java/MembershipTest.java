@@ -0,0 +1,141 @@
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MembershipTest {
+    private final Membership membership = new Membership();
+
+    @AfterEach
+    void close() {
+        membership.close();
+    }
+
+    private static Membership.Change change(Membership.Kind kind, String node) {
+        return new Membership.Change(kind, node);
+    }
+
+    @Test
+    void nothingChangedMeansNoBatch() {
+        assertNull(membership.flush());
+        assertEquals(0, membership.version());
+    }
+
+    @Test
+    void changesAreBatchedPerFlushWithIncreasingVersions() {
+        membership.alive("a");
+        membership.alive("b");
+        Membership.Batch first = membership.flush();
+        assertEquals(1, first.version());
+        assertEquals(List.of(change(Membership.Kind.JOINED, "a"), change(Membership.Kind.JOINED, "b")), first.changes());
+
+        membership.suspected("a");
+        membership.left("b");
+        Membership.Batch second = membership.flush();
+        assertEquals(2, second.version());
+        assertEquals(List.of(change(Membership.Kind.SUSPECT, "a"), change(Membership.Kind.LEFT, "b")), second.changes());
+
+        membership.alive("a");
+        assertEquals(List.of(change(Membership.Kind.RECOVERED, "a")), membership.flush().changes());
+        assertEquals(3, membership.version());
+    }
+
+    // несколько изменений одного узла между пачками схлопываются в разницу состояний
+    @Test
+    void changesWithinOneBatchCoalesce() {
+        membership.alive("a");
+        membership.suspected("a");
+        membership.alive("a");
+        membership.suspected("a");
+        assertEquals(List.of(change(Membership.Kind.JOINED, "a"), change(Membership.Kind.SUSPECT, "a")),
+                membership.flush().changes());
+
+        // подозрение снято и вернулось - снаружи ничего не поменялось
+        membership.alive("a");
+        membership.suspected("a");
+        assertNull(membership.flush());
+        assertEquals(1, membership.version());
+    }
+
+    @Test
+    void nodeThatCameAndWentIsNeverPublished() {
+        membership.alive("a");
+        membership.left("a");
+        assertNull(membership.flush());
+
+        membership.left("ghost");
+        assertNull(membership.flush());
+        assertEquals(0, membership.version());
+    }
+
+    @Test
+    void rejoinedNodeIsNoLongerSuspected() {
+        membership.suspected("a");
+        membership.flush();
+        membership.left("a");
+        membership.alive("a");
+        assertEquals(List.of(change(Membership.Kind.RECOVERED, "a")), membership.flush().changes());
+    }
+
+    @Test
+    void snapshotFollowsPublishedStateAndIsCachedPerVersion() {
+        assertEquals(new Membership.Snapshot(0, List.of(), Set.of()), membership.snapshot());
+
+        membership.alive("c");
+        membership.suspected("a");
+        membership.alive("b");
+        // до flush изменения наружу не видны
+        assertEquals(0, membership.snapshot().version());
+        membership.flush();
+
+        Membership.Snapshot snapshot = membership.snapshot();
+        assertEquals(new Membership.Snapshot(1, List.of("a", "b", "c"), Set.of("a")), snapshot);
+        assertSame(snapshot, membership.snapshot());
+
+        membership.left("b");
+        membership.flush();
+        assertEquals(List.of("a", "c"), membership.snapshot().nodes());
+    }
+
+    @Test
+    void subscriberReceivesBatchesInVersionOrder() throws InterruptedException {
+        List<Membership.Batch> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        membership.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Membership.Batch batch) {
+                received.add(batch);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        for (String node : new String[] { "a", "b", "c" }) {
+            membership.alive(node);
+            membership.flush();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; ++i)
+            assertEquals(i + 1, received.get(i).version());
+    }
+}
\ No newline at end of file
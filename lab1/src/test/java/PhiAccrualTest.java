@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhiAccrualTest {
+    private static final long INTERVAL = 1000;
+
+    private static PhiAccrual.Window window(PhiAccrual detector, long... arrivals) {
+        PhiAccrual.Window window = detector.newWindow();
+        for (long arrival : arrivals)
+            window.record(arrival);
+        return window;
+    }
+
+    // дедлайн - обращение формулы phi: в этот момент phi уже достиг порога, миллисекундой раньше - ещё нет
+    @Test
+    void deadlineIsFirstMillisecondWherePhiReachesThreshold() {
+        for (double threshold : new double[] { 0.2, 1, 3, 8, 16, 50, PhiAccrual.MAX_THRESHOLD }) {
+            PhiAccrual detector = new PhiAccrual(threshold, threshold, 100, INTERVAL, 0);
+            for (PhiAccrual.Window window : new PhiAccrual.Window[] {
+                    window(detector, 0, 1000, 2000, 3000),
+                    window(detector, 0, 700, 2100, 2600, 4200, 4300, 6000) }) {
+                long deadline = detector.suspectDeadline(window);
+                assertTrue(detector.phi(window, deadline) >= threshold - 1e-9, "threshold " + threshold);
+                assertTrue(detector.phi(window, deadline - 1) < threshold, "threshold " + threshold);
+            }
+        }
+    }
+
+    @Test
+    void phiGrowsWithSilence() {
+        PhiAccrual detector = new PhiAccrual(8, 16, 100, INTERVAL, 0);
+        PhiAccrual.Window window = window(detector, 0, 1000, 2000);
+        double previous = -1;
+        for (long now = 2000; now <= 6000; now += 100) {
+            double phi = detector.phi(window, now);
+            assertTrue(phi >= previous, "at " + now);
+            previous = phi;
+        }
+        assertTrue(detector.phi(window, 2000) < 1);
+    }
+
+    @Test
+    void deadDeadlineIsNotBeforeSuspectDeadline() {
+        PhiAccrual detector = new PhiAccrual(8, 16, 100, INTERVAL, 0);
+        PhiAccrual.Window window = window(detector, 0, 1000, 2000);
+        assertTrue(detector.deadDeadline(window) > detector.suspectDeadline(window));
+        assertTrue(detector.suspectDeadline(window) > 3000);
+    }
+
+    // неровный канал расширяет распределение, и подозрение наступает позже
+    @Test
+    void jitteryArrivalsDelaySuspicion() {
+        PhiAccrual detector = new PhiAccrual(8, 16, 8, INTERVAL, 0);
+        PhiAccrual.Window steady = window(detector, 0, 1000, 2000, 3000, 4000, 5000, 6000, 7000, 8000);
+        PhiAccrual.Window jittery = window(detector, 0, 400, 2000, 2300, 4000, 4500, 6000, 6200, 8000);
+        assertTrue(detector.suspectDeadline(jittery) - 8000 > detector.suspectDeadline(steady) - 8000);
+    }
+
+    @Test
+    void acceptablePauseShiftsDeadline() {
+        PhiAccrual strict = new PhiAccrual(8, 16, 100, INTERVAL, 0);
+        PhiAccrual lenient = new PhiAccrual(8, 16, 100, INTERVAL, 500);
+        assertEquals(strict.suspectDeadline(window(strict, 0, 1000)) + 500,
+                lenient.suspectDeadline(window(lenient, 0, 1000)), 1);
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(0, 8, 100, INTERVAL, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(8, 4, 100, INTERVAL, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(8, PhiAccrual.MAX_THRESHOLD + 1, 100, INTERVAL, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(Double.NaN, 8, 100, INTERVAL, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(8, 16, 1, INTERVAL, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(8, 16, 100, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PhiAccrual(8, 16, 100, INTERVAL, -1));
+    }
+}
\ No newline at end of file
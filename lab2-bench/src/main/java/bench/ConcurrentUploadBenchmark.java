@@ -0,0 +1,97 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// операция - пачка из clients одновременных загрузок; время операции - задержка самой медленной из них,
+// счётчики uploads/bytes дают пропускную способность сервера под нагрузкой
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ConcurrentUploadBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    public int clients;
+
+    @Param({"4096", "1048576"})
+    public long fileSize;
+
+    @Param({"threads", "virtual", "nio"})
+    public String server;
+
+    @Param({"stream"})
+    public String io;
+
+    private Path sourceDir;
+    private Path uploadsDir;
+    private Path source;
+    private Lab2Server lab2;
+    private ExecutorService drivers;
+    private long counter;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long uploads;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uploads = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        sourceDir = TestFiles.baseDir();
+        uploadsDir = TestFiles.uploadsDir();
+        source = TestFiles.sparse(sourceDir, fileSize);
+        Lab2Server.useUploadDir(uploadsDir);
+        lab2 = new Lab2Server(server);
+        lab2.start();
+        // 1000 клиентов в виртуальных потоках, чтобы нагрузку создавал сервер, а не драйвер
+        drivers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    // принятые файлы удаляются между итерациями, вне замера
+    @TearDown(Level.Iteration)
+    public void cleanUploads() throws IOException {
+        TestFiles.deleteRecursively(uploadsDir);
+        java.nio.file.Files.createDirectories(uploadsDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        drivers.shutdownNow();
+        lab2.stop();
+        TestFiles.deleteRecursively(sourceDir);
+        TestFiles.deleteRecursively(uploadsDir);
+    }
+
+    @Benchmark
+    public void uploadBatch(Counters counters) throws Exception {
+        List<Future<?>> batch = new ArrayList<>(clients);
+        for (int i = 0; i < clients; ++i) {
+            String name = "upload-" + counter++;
+            batch.add(drivers.submit(() -> {
+                UploadDriver.upload(source, fileSize, name, lab2.port(), 64 * 1024, io);
+                return null;
+            }));
+        }
+        for (Future<?> upload : batch)
+            upload.get();
+        counters.uploads += clients;
+        counters.bytes += clients * fileSize;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Server и NioServer из lab2 лежат в пакете по умолчанию, из именованного пакета (а JMH требует его)
+// к ним можно обратиться только рефлексией
+final class Lab2Server {
+    // threads, threads-zero-copy, virtual, nio
+    private final String mode;
+    private final int port;
+    private Object server;
+    private Thread thread;
+    private PrintStream originalOut;
+
+    Lab2Server(String mode) throws IOException {
+        this.mode = mode;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            this.port = probe.getLocalPort();
+        }
+    }
+
+    int port() {
+        return port;
+    }
+
+    // каталог загрузок задаётся до первой загрузки класса Server: UPLOAD_DIR статический
+    static void useUploadDir(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        System.setProperty("lab2.uploads", dir.toString());
+    }
+
+    void start() throws Exception {
+        // построчный вывод сервера на каждое соединение искажает замеры
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Method setEnabled = Class.forName("StatisticsTicker").getDeclaredMethod("setEnabled", boolean.class);
+        // StatisticsTicker package-private, из другого пакета доступ только так
+        setEnabled.setAccessible(true);
+        setEnabled.invoke(null, false);
+
+        if ("nio".equals(mode)) {
+            server = Class.forName("NioServer").getConstructor(int.class, int.class)
+                    .newInstance(port, Runtime.getRuntime().availableProcessors());
+        } else {
+            Class<?> serverClass = Class.forName("Server");
+            server = serverClass.getConstructor(int.class).newInstance(port);
+            serverClass.getMethod("setZeroCopy", boolean.class).invoke(server, "threads-zero-copy".equals(mode));
+            serverClass.getMethod("setVirtualThreads", boolean.class).invoke(server, "virtual".equals(mode));
+        }
+        Method start = server.getClass().getMethod("start");
+        thread = new Thread(() -> {
+            try {
+                start.invoke(server);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "lab2-server");
+        thread.setDaemon(true);
+        thread.start();
+        awaitListening();
+    }
+
+    private void awaitListening() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 100);
+                // пустое соединение сервер отбросит как обрыв заголовка
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline)
+                    throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    void stop() throws Exception {
+        if (server != null)
+            server.getClass().getMethod("stop").invoke(server);
+        if (thread != null)
+            thread.join(5_000);
+        if (originalOut != null)
+            System.setOut(originalOut);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// исходные файлы создаются разреженными (setLength), поэтому файл в несколько ГБ не занимает места
+// и читается из кеша страниц; каталог - -Dlab2.bench.dir, по умолчанию /dev/shm, если он есть
+final class TestFiles {
+    private TestFiles() {
+    }
+
+    static Path baseDir() throws IOException {
+        String configured = System.getProperty("lab2.bench.dir");
+        Path base = configured != null ? Paths.get(configured)
+                : Files.isDirectory(Paths.get("/dev/shm")) ? Paths.get("/dev/shm") : Paths.get(System.getProperty("java.io.tmpdir"));
+        return Files.createTempDirectory(base, "lab2-bench");
+    }
+
+    // каталог загрузок сервера отдельно от исходников: его можно держать на реальном диске;
+    // UPLOAD_DIR читается один раз при загрузке Server, поэтому без форка все прогоны делят один каталог
+    static Path uploadsDir() throws IOException {
+        String fixed = System.getProperty("lab2.uploads");
+        if (fixed != null)
+            return Files.createDirectories(Paths.get(fixed));
+        String configured = System.getProperty("lab2.bench.uploads");
+        Path base = configured != null ? Paths.get(configured) : Paths.get(System.getProperty("java.io.tmpdir"));
+        return Files.createTempDirectory(base, "lab2-uploads");
+    }
+
+    static Path sparse(Path dir, long size) throws IOException {
+        Path file = dir.resolve("source-" + size + ".bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(size);
+        }
+        return file;
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir))
+            return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(p);
+        }
+    }
+}
\ No newline at end of file
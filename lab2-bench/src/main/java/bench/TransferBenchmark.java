@@ -0,0 +1,72 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// одна загрузка за операцию: пропускная способность приёмного цикла в зависимости от размера файла,
+// буфера клиента, способа ввода-вывода и режима сервера
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TransferBenchmark {
+    @Param({"4096", "1048576", "67108864", "1073741824", "4294967296"})
+    public long fileSize;
+
+    @Param({"8192", "65536", "1048576"})
+    public int bufferSize;
+
+    @Param({"stream", "channel", "transfer"})
+    public String io;
+
+    @Param({"threads", "threads-zero-copy", "virtual", "nio"})
+    public String server;
+
+    private Path sourceDir;
+    private Path uploadsDir;
+    private Path source;
+    private Lab2Server lab2;
+    private long counter;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        sourceDir = TestFiles.baseDir();
+        uploadsDir = TestFiles.uploadsDir();
+        source = TestFiles.sparse(sourceDir, fileSize);
+        Lab2Server.useUploadDir(uploadsDir);
+        lab2 = new Lab2Server(server);
+        lab2.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lab2.stop();
+        TestFiles.deleteRecursively(sourceDir);
+        TestFiles.deleteRecursively(uploadsDir);
+    }
+
+    @Benchmark
+    public void upload(Bytes bytes) throws Exception {
+        String name = "upload-" + counter++;
+        UploadDriver.upload(source, fileSize, name, lab2.port(), bufferSize, io);
+        bytes.bytes += fileSize;
+        // удаление входит в замер, но иначе файлы по несколько ГБ заполнят диск за одну итерацию
+        Files.deleteIfExists(uploadsDir.resolve(name));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package bench;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// клиент базового протокола lab2 (длина имени, имя, размер, тело, байт ответа)
+// с настраиваемым буфером и способом ввода-вывода
+final class UploadDriver {
+    private UploadDriver() {
+    }
+
+    // stream - FileInputStream/DataOutputStream как в Client, channel - FileChannel/SocketChannel через
+    // прямой буфер, transfer - FileChannel.transferTo (sendfile)
+    static void upload(Path file, long fileSize, String name, int port, int bufferSize, String io) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int status;
+        if ("stream".equals(io)) {
+            try (Socket socket = new Socket("127.0.0.1", port);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), bufferSize));
+                 DataInputStream in = new DataInputStream(socket.getInputStream());
+                 InputStream fis = new FileInputStream(file.toFile())) {
+                out.writeInt(nameBytes.length);
+                out.write(nameBytes);
+                out.writeLong(fileSize);
+                byte[] buffer = new byte[bufferSize];
+                int bytesRead;
+                while ((bytesRead = fis.read(buffer)) != -1)
+                    out.write(buffer, 0, bytesRead);
+                out.flush();
+                status = in.readByte();
+            }
+        } else {
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                 FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + nameBytes.length + Long.BYTES);
+                header.putInt(nameBytes.length).put(nameBytes).putLong(fileSize).flip();
+                while (header.hasRemaining())
+                    channel.write(header);
+
+                long position = 0;
+                if ("transfer".equals(io)) {
+                    while (position < fileSize)
+                        position += fc.transferTo(position, fileSize - position, channel);
+                } else {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                    while (position < fileSize) {
+                        buffer.clear();
+                        int bytesRead = fc.read(buffer, position);
+                        if (bytesRead < 0)
+                            throw new EOFException(file.toString());
+                        buffer.flip();
+                        while (buffer.hasRemaining())
+                            channel.write(buffer);
+                        position += bytesRead;
+                    }
+                }
+                ByteBuffer response = ByteBuffer.allocate(1);
+                if (channel.read(response) != 1)
+                    throw new EOFException("Сервер закрыл соединение без ответа");
+                status = response.get(0);
+            }
+        }
+        if (status != 1)
+            throw new IOException("Сервер вернул " + status + " для " + name);
+    }
+}
\ No newline at end of file
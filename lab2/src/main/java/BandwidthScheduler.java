@@ -0,0 +1,343 @@
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// общий для сервера планировщик полосы записи: ведро токенов на весь сервер и по ведру на IP клиента,
+// общее ведро делится между передачами взвешенно-справедливо (start-time fair queueing),
+// плюс допуск соединений: не больше maxActive передач и acceptQueue ожидающих, дальше accept не вызывается.
+// ожидание - на ReentrantLock/Condition, а не на мониторах: ждущий виртуальный поток (--virtual) не занимает носитель
+class BandwidthScheduler implements BandwidthSchedulerMBean {
+    private static final BandwidthScheduler INSTANCE = new BandwidthScheduler();
+
+    // байт в секунду; 0 - без ограничения
+    private volatile long globalRate = 0;
+    private volatile long clientRate = 0;
+    private volatile int maxActive = 0;
+    private volatile int acceptQueue = 64;
+    private final Map<String, Integer> weights = new ConcurrentHashMap<>();
+
+    private final TokenBucket global = new TokenBucket();
+    private final Map<InetAddress, ClientBucket> clients = new ConcurrentHashMap<>();
+
+    // очередь к общему ведру по стартовой метке, под globalLock
+    private final PriorityQueue<Flow> waiting = new PriorityQueue<>((a, b) ->
+            a.startTag != b.startTag ? Double.compare(a.startTag, b.startTag) : Long.compare(a.seq, b.seq));
+    private double virtualTime = 0;
+    private long seq = 0;
+    private final ReentrantLock globalLock = new ReentrantLock();
+    private final Condition queueChanged = globalLock.newCondition();
+
+    private final ReentrantLock admission = new ReentrantLock();
+    private final Condition admissionChanged = admission.newCondition();
+    // принятые, но ещё не закрытые соединения, и из них допущенные к передаче
+    private int pending = 0;
+    private int active = 0;
+
+    private BandwidthScheduler() {
+    }
+
+    static BandwidthScheduler get() {
+        return INSTANCE;
+    }
+
+    void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("lab2:type=BandwidthScheduler"));
+        } catch (JMException e) {
+            System.out.println("Не удалось зарегистрировать MBean: " + e.getMessage());
+        }
+    }
+
+    // вызывается до accept(): пока очередь допуска полна, соединения копятся в backlog ядра
+    void awaitAcceptSlot() throws InterruptedException {
+        admission.lock();
+        try {
+            while (maxActive > 0 && pending >= maxActive + acceptQueue)
+                admissionChanged.await();
+            ++pending;
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    // ожидание места среди активных передач
+    void admit() throws InterruptedIOException {
+        admission.lock();
+        try {
+            while (maxActive > 0 && active >= maxActive)
+                admissionChanged.await();
+            ++active;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание допуска прервано");
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    // передача больше не принимает данные, но соединение ещё открыто (ждёт итога многопоточной сессии):
+    // место среди активных освобождается сразу, иначе потоки той же сессии в очереди допуска не дождутся его
+    void deactivate() {
+        admission.lock();
+        try {
+            --active;
+            admissionChanged.signalAll();
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    void release(boolean admitted) {
+        admission.lock();
+        try {
+            --pending;
+            if (admitted)
+                --active;
+            admissionChanged.signalAll();
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    Flow open(InetAddress address) {
+        ClientBucket bucket = clients.compute(address, (a, b) -> {
+            if (b == null)
+                b = new ClientBucket();
+            ++b.flows;
+            return b;
+        });
+        return new Flow(address, bucket, getClientWeight(address.getHostAddress()));
+    }
+
+    private void closeFlow(Flow flow) {
+        clients.computeIfPresent(flow.address, (a, b) -> --b.flows == 0 ? null : b);
+    }
+
+    @Override
+    public long getGlobalRate() {
+        return globalRate;
+    }
+
+    @Override
+    public void setGlobalRate(long bytesPerSecond) {
+        globalRate = Math.max(bytesPerSecond, 0);
+        globalLock.lock();
+        try {
+            queueChanged.signalAll();
+        } finally {
+            globalLock.unlock();
+        }
+    }
+
+    @Override
+    public long getClientRate() {
+        return clientRate;
+    }
+
+    @Override
+    public void setClientRate(long bytesPerSecond) {
+        clientRate = Math.max(bytesPerSecond, 0);
+    }
+
+    @Override
+    public int getMaxActiveTransfers() {
+        return maxActive;
+    }
+
+    @Override
+    public void setMaxActiveTransfers(int maxActive) {
+        this.maxActive = Math.max(maxActive, 0);
+        signalAdmission();
+    }
+
+    @Override
+    public int getAcceptQueue() {
+        return acceptQueue;
+    }
+
+    @Override
+    public void setAcceptQueue(int acceptQueue) {
+        this.acceptQueue = Math.max(acceptQueue, 0);
+        signalAdmission();
+    }
+
+    private void signalAdmission() {
+        admission.lock();
+        try {
+            admissionChanged.signalAll();
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    @Override
+    public int getActiveTransfers() {
+        admission.lock();
+        try {
+            return active;
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    @Override
+    public int getQueuedConnections() {
+        admission.lock();
+        try {
+            return pending - active;
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    // вес применяется к передачам, открытым после изменения
+    @Override
+    public int getClientWeight(String address) {
+        return weights.getOrDefault(address, 1);
+    }
+
+    @Override
+    public void setClientWeight(String address, int weight) {
+        if (weight < 1)
+            throw new IllegalArgumentException("Вес должен быть не меньше 1: " + weight);
+        if (weight == 1)
+            weights.remove(address);
+        else
+            weights.put(address, weight);
+    }
+
+
+    // ведро с долгом: байты списываются после чтения, баланс может уйти в минус,
+    // тогда следующий приём ждёт, пока долг не погасится; ёмкость - секунда трафика
+    private static class TokenBucket {
+        private double tokens = 0;
+        private long last = System.nanoTime();
+
+        private void refill(long rate, long now) {
+            tokens = Math.min(rate, tokens + (now - last) * (double) rate / 1_000_000_000L);
+            last = now;
+        }
+
+        // наносекунды до неотрицательного баланса
+        long delay(long rate, long now) {
+            if (rate <= 0)
+                return 0;
+            refill(rate, now);
+            return tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000L / rate) + 1;
+        }
+
+        void take(long bytes, long rate, long now) {
+            if (rate <= 0)
+                return;
+            refill(rate, now);
+            tokens -= bytes;
+        }
+    }
+
+    // ведро IP-адреса, общее для всех его соединений; удаляется с последним
+    private static class ClientBucket extends TokenBucket {
+        private int flows = 0;
+    }
+
+    // одна передача: списывает принятые байты сначала с ведра своего IP, затем с общего
+    class Flow implements AutoCloseable {
+        private final InetAddress address;
+        private final ClientBucket bucket;
+        private final int weight;
+        private double startTag;
+        private double finishTag = 0;
+        private long seq;
+        private boolean closed = false;
+
+        private Flow(InetAddress address, ClientBucket bucket, int weight) {
+            this.address = address;
+            this.bucket = bucket;
+            this.weight = weight;
+        }
+
+        // блокирует поток, пока принятые байты не уложатся в лимиты; для потокового сервера
+        void consume(long bytes) throws InterruptedIOException {
+            if (bytes <= 0 || (globalRate == 0 && clientRate == 0))
+                return;
+            try {
+                long delay;
+                synchronized (bucket) {
+                    bucket.take(bytes, clientRate, System.nanoTime());
+                    delay = bucket.delay(clientRate, System.nanoTime());
+                }
+                if (delay > 0)
+                    Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+                if (globalRate > 0)
+                    takeGlobal(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание полосы прервано");
+            }
+        }
+
+        // очередь по стартовым меткам: метка растёт на bytes / weight, так что при конкуренции
+        // передача с весом 2 получает вдвое больше байт; ждёт только голова очереди, по таймеру ведра
+        private void takeGlobal(long bytes) throws InterruptedException {
+            globalLock.lock();
+            try {
+                startTag = Math.max(virtualTime, finishTag);
+                finishTag = startTag + (double) bytes / weight;
+                seq = ++BandwidthScheduler.this.seq;
+                waiting.add(this);
+                try {
+                    while (true) {
+                        if (waiting.peek() == this) {
+                            long delay = global.delay(globalRate, System.nanoTime());
+                            if (delay == 0)
+                                break;
+                            queueChanged.awaitNanos(delay);
+                        } else {
+                            queueChanged.await();
+                        }
+                    }
+                    virtualTime = startTag;
+                    global.take(bytes, globalRate, System.nanoTime());
+                } finally {
+                    waiting.remove(this);
+                    queueChanged.signalAll();
+                }
+            } finally {
+                globalLock.unlock();
+            }
+        }
+
+        // неблокирующий вариант для NioServer: списывает байты и возвращает, на сколько наносекунд
+        // приостановить чтение; без очереди, поэтому веса здесь не действуют
+        long pace(long bytes) {
+            if (bytes <= 0 || (globalRate == 0 && clientRate == 0))
+                return 0;
+            long delay;
+            synchronized (bucket) {
+                bucket.take(bytes, clientRate, System.nanoTime());
+                delay = bucket.delay(clientRate, System.nanoTime());
+            }
+            globalLock.lock();
+            try {
+                global.take(bytes, globalRate, System.nanoTime());
+                return Math.max(delay, global.delay(globalRate, System.nanoTime()));
+            } finally {
+                globalLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            closeFlow(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+// лимиты BandwidthScheduler, меняются на ходу через JMX; 0 - без ограничения
+public interface BandwidthSchedulerMBean {
+    long getGlobalRate();
+
+    void setGlobalRate(long bytesPerSecond);
+
+    long getClientRate();
+
+    void setClientRate(long bytesPerSecond);
+
+    int getMaxActiveTransfers();
+
+    void setMaxActiveTransfers(int maxActive);
+
+    int getAcceptQueue();
+
+    void setAcceptQueue(int acceptQueue);
+
+    int getActiveTransfers();
+
+    int getQueuedConnections();
+
+    int getClientWeight(String address);
+
+    void setClientWeight(String address, int weight);
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+// общий для всех соединений пул прямых буферов по классам размеров (степени двойки от 4 КБ до 4 МБ)
+// и тех же классов массивов - для кодеков, работающих с byte[];
+// в простое буферов и массивов вместе держится не больше cap байт, лишние отдаются сборщику
+final class BufferPool {
+    private static final int MIN_SHIFT = 12;
+    private static final int MAX_SHIFT = 22;
+    // больше пул не хранит, такой буфер выделялся бы заново при каждом acquire
+    static final int MAX_BUFFER_SIZE = 1 << MAX_SHIFT;
+
+    // LIFO: недавно возвращённый буфер скорее всего ещё в кеше процессора
+    private static final List<ConcurrentLinkedDeque<ByteBuffer>> free = new ArrayList<>();
+    private static final List<ConcurrentLinkedDeque<byte[]>> freeArrays = new ArrayList<>();
+    private static final AtomicLong pooledBytes = new AtomicLong();
+
+    private static volatile int bufferSize = 64 * 1024;
+    private static volatile long cap = 64L << 20;
+
+    static {
+        for (int shift = MIN_SHIFT; shift <= MAX_SHIFT; ++shift) {
+            free.add(new ConcurrentLinkedDeque<>());
+            freeArrays.add(new ConcurrentLinkedDeque<>());
+        }
+    }
+
+    private BufferPool() {
+    }
+
+    // размер буфера приёма по умолчанию, округляется вверх до класса; не больше MAX_BUFFER_SIZE
+    static void setBufferSize(int size) {
+        bufferSize = Math.min(Math.max(size, 1), MAX_BUFFER_SIZE);
+    }
+
+    static void setCap(long bytes) {
+        cap = bytes;
+    }
+
+    private static int classOf(int size) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    static ByteBuffer acquire() {
+        return acquire(bufferSize);
+    }
+
+    // буфер ёмкостью не меньше size, clear(); вернуть через release
+    static ByteBuffer acquire(int size) {
+        int sizeClass = classOf(size);
+        if (sizeClass < 0)
+            return ByteBuffer.allocateDirect(size);
+        ByteBuffer buffer = free.get(sizeClass).pollFirst();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+        pooledBytes.addAndGet(-buffer.capacity());
+        return buffer.clear();
+    }
+
+    static void release(ByteBuffer buffer) {
+        if (buffer == null)
+            return;
+        int sizeClass = classOf(buffer.capacity());
+        if (sizeClass < 0 || buffer.capacity() != 1 << (sizeClass + MIN_SHIFT))
+            return;
+        if (pooledBytes.addAndGet(buffer.capacity()) > cap) {
+            pooledBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        free.get(sizeClass).offerFirst(buffer);
+    }
+
+    // массив длиной не меньше size; вернуть через release
+    static byte[] acquireArray(int size) {
+        int sizeClass = classOf(size);
+        if (sizeClass < 0)
+            return new byte[size];
+        byte[] array = freeArrays.get(sizeClass).pollFirst();
+        if (array == null)
+            return new byte[1 << (sizeClass + MIN_SHIFT)];
+        pooledBytes.addAndGet(-array.length);
+        return array;
+    }
+
+    static void release(byte[] array) {
+        if (array == null)
+            return;
+        int sizeClass = classOf(array.length);
+        if (sizeClass < 0 || array.length != 1 << (sizeClass + MIN_SHIFT))
+            return;
+        if (pooledBytes.addAndGet(array.length) > cap) {
+            pooledBytes.addAndGet(-array.length);
+            return;
+        }
+        freeArrays.get(sizeClass).offerFirst(array);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+// контентно-адресуемое хранилище чанков (uploads-chunks/ab/abcdef...) и манифесты файлов
+// (uploads-manifests/<путь в uploads>.manifest): размер, число чанков, затем пары (SHA-256, длина)
+class ChunkStore {
+    static final String CHUNK_DIR = "uploads-chunks";
+    static final String MANIFEST_DIR = "uploads-manifests";
+    // хеши списка чанков хранятся страницами по столько штук: у файла в терабайт их сотни миллионов
+    static final int HASHES_PER_PAGE = 4096;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private ChunkStore() {
+    }
+
+    private static Path chunkPath(byte[] hash, int offset) {
+        String hex = HEX.formatHex(hash, offset, offset + ContentChunker.HASH_SIZE);
+        return Paths.get(CHUNK_DIR, hex.substring(0, 2), hex);
+    }
+
+    static boolean contains(byte[] hashes, int index) {
+        return Files.exists(chunkPath(hashes, index * ContentChunker.HASH_SIZE));
+    }
+
+    // сохраняет чанк, если его SHA-256 совпадает с заявленным; false - данные повреждены
+    static boolean store(byte[] hashes, int index, byte[] data, int length) throws IOException {
+        int offset = index * ContentChunker.HASH_SIZE;
+        MessageDigest sha = sha256();
+        sha.update(data, 0, length);
+        if (!MessageDigest.isEqual(sha.digest(), Arrays.copyOfRange(hashes, offset, offset + ContentChunker.HASH_SIZE)))
+            return false;
+
+        Path path = chunkPath(hashes, offset);
+        if (Files.exists(path))
+            return true;
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(path.getParent(), "chunk", ".tmp");
+        try {
+            Files.write(tmp, Arrays.copyOf(data, length));
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
+
+    static Path manifestPath(Path targetPath) {
+        Path uploadsDirPath = Paths.get(Server.UPLOAD_DIR).toAbsolutePath().normalize();
+        return Paths.get(MANIFEST_DIR).resolve(uploadsDirPath.relativize(targetPath) + ".manifest");
+    }
+
+    // hashPages - страницы по HASHES_PER_PAGE хешей; replace = false - существующий манифест не перезаписывается
+    // (без собранного файла он и есть загруженный файл), а создание откажет с FileAlreadyExistsException
+    static void writeManifest(Path manifest, long fileSize, List<byte[]> hashPages, int[] lengths, boolean replace) throws IOException {
+        Files.createDirectories(manifest.toAbsolutePath().getParent());
+        OpenOption[] options = replace
+                ? new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE }
+                : new OpenOption[] { StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE };
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(manifest, options)))) {
+            out.writeLong(fileSize);
+            out.writeInt(lengths.length);
+            for (int i = 0; i < lengths.length; ++i) {
+                out.write(hashPages.get(i / HASHES_PER_PAGE), i % HASHES_PER_PAGE * ContentChunker.HASH_SIZE, ContentChunker.HASH_SIZE);
+                out.writeInt(lengths[i]);
+            }
+        }
+    }
+
+    // собирает файл из чанков по манифесту
+    static void materialize(Path manifest, Path targetPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(targetPath,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            long fileSize = in.readLong();
+            int count = in.readInt();
+            byte[] hash = new byte[ContentChunker.HASH_SIZE];
+            long written = 0;
+            for (int i = 0; i < count; ++i) {
+                in.readFully(hash);
+                int length = in.readInt();
+                Files.copy(chunkPath(hash, 0), out);
+                written += length;
+            }
+            if (written != fileSize)
+                throw new IOException("Манифест " + manifest + " не сходится по размеру");
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // сборка по требованию для загрузок, принятых с --dedup-lazy
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Использование: java ChunkStore {манифест} {куда_собрать}");
+            return;
+        }
+        try {
+            materialize(Paths.get(args[0]), Paths.get(args[1]));
+            System.out.println("Файл собран: " + args[1]);
+        } catch (IOException e) {
+            System.out.println("Ошибка при сборке файла: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// многопоточная загрузка одного файла: диапазоны приходят по разным соединениям
+// и пишутся позиционно в заранее выделенный файл; сорванная сессия файл удаляет - он полной длины
+// с дырами и неотличим от принятого, а продолжить такую загрузку нельзя (у нового запуска клиента новый id)
+class ChunkedSession {
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    // завершённая сессия ещё столько хранится с результатом для опоздавших соединений
+    private static final long TOMBSTONE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final Map<Long, ChunkedSession> sessions = new ConcurrentHashMap<>();
+
+    private final long sessionId;
+    private final String receivedFilename;
+    private final long totalSize;
+    private final Path targetPath;
+    private final FileChannel file;
+
+    // занятые диапазоны offset -> end, чтобы перекрытия не засчитывались дважды
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private final AtomicLong received = new AtomicLong(0);
+    private final CompletableFuture<Boolean> done = new CompletableFuture<>();
+    private volatile long lastProgress = System.nanoTime();
+    // 0 - сессия ещё идёт
+    private volatile long finishedAt = 0;
+
+    private ChunkedSession(long sessionId, String receivedFilename, long totalSize, Path targetPath) throws IOException {
+        this.sessionId = sessionId;
+        this.receivedFilename = receivedFilename;
+        this.totalSize = totalSize;
+        this.targetPath = targetPath;
+        this.file = FileChannel.open(targetPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        // выделение файла целиком сразу, дальше только позиционная запись
+        UploadFile.preallocate(file, totalSize);
+    }
+
+    // сессия с данным id; первое соединение создаёт её и выбирает путь назначения,
+    // null - если путь некорректен или параметры расходятся с уже открытой сессией.
+    // соединение, опоздавшее к уже завершённой сессии (например, ждало допуска), получает её же
+    // с готовым результатом, а не новую сессию с новым файлом
+    static ChunkedSession join(long sessionId, String receivedFilename, long totalSize, int id) throws IOException {
+        long now = System.nanoTime();
+        sessions.values().removeIf(s -> s.finishedAt != 0 && now - s.finishedAt > TOMBSTONE_NANOS);
+        try {
+            ChunkedSession session = sessions.computeIfAbsent(sessionId, sid -> {
+                try {
+                    Path targetPath = Server.resolveTargetPath(receivedFilename, id);
+                    return targetPath == null ? null : new ChunkedSession(sid, receivedFilename, totalSize, targetPath);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (session == null)
+                return null;
+            if (session.totalSize != totalSize || !session.receivedFilename.equals(receivedFilename)) {
+                System.out.println("Параметры сессии " + sessionId + " не совпадают");
+                ServerMetrics.get().headerRejected();
+                return null;
+            }
+            if (totalSize == 0)
+                session.complete(true);
+            return session;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    FileChannel file() {
+        return file;
+    }
+
+    // резервирует [offset, offset + length); false - выход за границы или перекрытие
+    synchronized boolean reserve(long offset, long length) {
+        if (offset < 0 || length < 0 || offset > totalSize || length > totalSize - offset)
+            return false;
+        if (length == 0)
+            return true;
+        Map.Entry<Long, Long> before = ranges.floorEntry(offset);
+        if (before != null && before.getValue() > offset)
+            return false;
+        Long after = ranges.ceilingKey(offset);
+        if (after != null && after < offset + length)
+            return false;
+        ranges.put(offset, offset + length);
+        return true;
+    }
+
+    void addReceived(long bytes) {
+        lastProgress = System.nanoTime();
+        if (received.addAndGet(bytes) == totalSize)
+            complete(true);
+    }
+
+    void fail() {
+        complete(false);
+    }
+
+    private void complete(boolean success) {
+        if (!done.complete(success))
+            return;
+        finishedAt = System.nanoTime();
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии файла: " + e.getMessage());
+        }
+        if (success) {
+            System.out.println("Файл " + receivedFilename + " собран из диапазонов: " + targetPath);
+            return;
+        }
+        System.out.println("Сессия " + sessionId + " прервана, получено " + received.get() + " из " + totalSize);
+        try {
+            Files.deleteIfExists(targetPath);
+        } catch (IOException e) {
+            System.out.println("Ошибка при удалении файла: " + e.getMessage());
+        }
+    }
+
+    // ожидание всех диапазонов от всех соединений; сессия без прогресса дольше таймаута считается сорванной
+    boolean awaitCompletion() {
+        while (true) {
+            try {
+                return done.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                if (System.nanoTime() - lastProgress > IDLE_TIMEOUT_NANOS)
+                    fail();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail();
+                return false;
+            } catch (ExecutionException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -1,30 +1,100 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class Client {
     private static final int MAX_FILENAME_SIZE = 4096;
     private static final long MAX_FILE_SIZE = 1L << 40;
+    private static final int OP_CHUNKED = -1;
+    private static final int OP_RESUME = -2;
+    private static final int OP_CHECKED = -3;
+    private static final int OP_DEDUP = -4;
+    private static final int OP_COMPRESSED = -5;
+    private static final int OP_SESSION = -6;
+    private static final int FRAME_SIZE = 64 * 1024;
+    // после несжимаемого кадра столько кадров подряд шлются без попытки сжатия (удваивается)
+    private static final int MAX_COMPRESSION_BACKOFF = 64;
+    private static final int STATUS_OK = 1;
+    private static final int STATUS_CHECKSUM_MISMATCH = 2;
+    private static final int RESUME_ATTEMPTS = 5;
+    private static final long RESUME_BUSY = -1;
 
     private final String filePath;
     private final String serverAddress;
     private final int serverPort;
 
+    private boolean zeroCopy = false;
+    private int streams = 1;
+    private long chunkSize = 8L << 20;
+    private boolean resume = false;
+    private String checksum = null;
+    private boolean dedup = false;
+    private byte[] codecs = null;
+
     public Client(String filePath, String serverAddress, int serverPort) {
         this.filePath = filePath;
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
     }
 
+    // отправка тела через FileChannel.transferTo в SocketChannel (sendfile на Linux)
+    public void setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    // число параллельных соединений; больше одного - файл режется на диапазоны по chunkSize байт
+    public void setStreams(int streams) {
+        this.streams = streams;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    // докачка: сервер хранит журнал по id загрузки и сообщает, с какого смещения продолжать
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    // контрольная сумма тела в трейлере; считается в том же проходе по файлу, что и отправка
+    public void setChecksum(String algorithm) {
+        this.checksum = algorithm;
+    }
+
+    // дедупликация: сначала список хешей чанков, затем только те чанки, которых нет на сервере
+    public void setDedup(boolean dedup) {
+        this.dedup = dedup;
+    }
+
+    // кодеки в порядке предпочтения; сервер выбирает первый знакомый, иначе тело идёт без сжатия
+    public void setCompression(byte[] codecs) {
+        this.codecs = codecs;
+    }
+
     public void sendFile() throws IOException {
         Path file = Paths.get(this.filePath);
         if (!Files.exists(file) || !Files.isReadable(file)) {
             System.out.println("Отправляемый файл недоступен: " + filePath);
             return;
         }
+        if (Files.isDirectory(file)) {
+            sendDirectory(file);
+            return;
+        }
 
         long fileSize = Files.size(file);
         if (fileSize > MAX_FILE_SIZE) {
@@ -39,12 +109,51 @@ public class Client {
             return;
         }
 
+        // трейлер с суммой есть только у обычной загрузки одним соединением
+        if (checksum != null && (codecs != null || dedup || resume || streams > 1)) {
+            System.out.println("--checksum нельзя сочетать с --compress, --dedup, --resume и --streams");
+            return;
+        }
+        if (codecs != null) {
+            sendFileCompressed(file, fileNameBytes, fileSize);
+            return;
+        }
+        if (dedup) {
+            sendFileDedup(file, fileNameBytes, fileSize);
+            return;
+        }
+        if (resume) {
+            sendFileResumable(file, fileNameBytes, fileSize);
+            return;
+        }
+        if (streams > 1) {
+            sendFileParallel(file, fileNameBytes, fileSize);
+            return;
+        }
+        // transferTo не пропускает байты через JVM, поэтому с контрольной суммой отправка идёт через буфер
+        if (zeroCopy && checksum == null) {
+            sendFileZeroCopy(file, fileNameBytes, fileSize);
+            return;
+        }
+        TransferDigest digest = null;
+        if (checksum != null) {
+            digest = TransferDigest.create(checksum);
+            if (digest == null) {
+                System.out.println("Неизвестный алгоритм контрольной суммы: " + checksum);
+                return;
+            }
+        }
+
         Socket socket = new Socket(serverAddress, serverPort);
         DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
         DataInputStream dis = new DataInputStream(socket.getInputStream());
 
         try {
             // заголовок
+            if (digest != null) {
+                dos.writeInt(OP_CHECKED);
+                dos.writeUTF(checksum);
+            }
             dos.writeInt(fileNameBytes.length);
             dos.write(fileNameBytes);
             dos.writeLong(fileSize);
@@ -56,13 +165,24 @@ public class Client {
                 int bytesRead;
                 while ((bytesRead = fis.read(buffer)) != -1) {
                     dos.write(buffer, 0, bytesRead);
+                    if (digest != null)
+                        digest.update(buffer, 0, bytesRead);
                 }
             }
+
+            // трейлер
+            if (digest != null) {
+                byte[] sum = digest.finish();
+                dos.writeInt(sum.length);
+                dos.write(sum);
+            }
             dos.flush();
 
             int response = dis.readByte();
-            if (response == 1) {
+            if (response == STATUS_OK) {
                 System.out.println("Успешная передача файла.");
+            } else if (response == STATUS_CHECKSUM_MISMATCH) {
+                System.out.println("Ошибка при передаче файла: контрольная сумма не совпала.");
             } else {
                 System.out.println("Ошибка при передаче файла.");
             }
@@ -77,9 +197,427 @@ public class Client {
         }
     }
 
+    private void sendFileZeroCopy(Path file, byte[] fileNameBytes, long fileSize) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(serverAddress, serverPort));
+             FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            // заголовок
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + fileNameBytes.length + Long.BYTES);
+            header.putInt(fileNameBytes.length).put(fileNameBytes).putLong(fileSize).flip();
+            writeFully(channel, header);
+
+            // файл
+            long position = 0;
+            while (position < fileSize) {
+                long sent = fc.transferTo(position, fileSize - position, channel);
+                if (sent <= 0)
+                    throw new IOException("Файл укоротился во время передачи");
+                position += sent;
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(1);
+            if (channel.read(response) == 1 && response.get(0) == 1) {
+                System.out.println("Успешная передача файла.");
+            } else {
+                System.out.println("Ошибка при передаче файла.");
+            }
+        }
+    }
+
+    private void sendFileParallel(Path file, byte[] fileNameBytes, long fileSize) throws IOException {
+        long sessionId = ThreadLocalRandom.current().nextLong();
+        AtomicLong nextOffset = new AtomicLong(0);
+        // лишние соединения без диапазонов не открываются
+        int connections = (int) Math.max(1, Math.min(streams, (fileSize + chunkSize - 1) / chunkSize));
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < connections; ++i)
+            results.add(pool.submit(() -> sendStream(file, fileNameBytes, fileSize, sessionId, nextOffset)));
+        pool.shutdown();
+
+        boolean success = true;
+        for (Future<Boolean> result : results) {
+            try {
+                success &= result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Передача прервана");
+            } catch (ExecutionException e) {
+                System.out.println("Ошибка в потоке передачи: " + e.getCause().getMessage());
+                success = false;
+            }
+        }
+        if (success) {
+            System.out.println("Успешная передача файла.");
+        } else {
+            System.out.println("Ошибка при передаче файла.");
+        }
+    }
+
+    // одно соединение многопоточной загрузки: берёт очередные диапазоны из общего счётчика;
+    // если диапазонов уже не осталось, соединение не открывается - результат сообщат остальные
+    private boolean sendStream(Path file, byte[] fileNameBytes, long fileSize, long sessionId, AtomicLong nextOffset) throws IOException {
+        long offset = nextOffset.getAndAdd(chunkSize);
+        if (offset >= fileSize && fileSize > 0)
+            return true;
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(serverAddress, serverPort));
+             FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            // заголовок
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES + fileNameBytes.length + Long.BYTES);
+            header.putInt(OP_CHUNKED).putLong(sessionId).putInt(fileNameBytes.length).put(fileNameBytes).putLong(fileSize).flip();
+            writeFully(channel, header);
+
+            ByteBuffer rangeHeader = ByteBuffer.allocate(2 * Long.BYTES);
+            ByteBuffer buffer = zeroCopy ? null : ByteBuffer.allocate(64 * 1024);
+            for (; offset < fileSize; offset = nextOffset.getAndAdd(chunkSize)) {
+                long length = Math.min(chunkSize, fileSize - offset);
+                rangeHeader.clear();
+                rangeHeader.putLong(offset).putLong(length).flip();
+                writeFully(channel, rangeHeader);
+
+                long position = offset;
+                while (position < offset + length) {
+                    long sent;
+                    if (zeroCopy) {
+                        sent = fc.transferTo(position, offset + length - position, channel);
+                    } else {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), offset + length - position));
+                        sent = fc.read(buffer, position);
+                        if (sent > 0) {
+                            buffer.flip();
+                            writeFully(channel, buffer);
+                        }
+                    }
+                    if (sent <= 0)
+                        throw new IOException("Файл укоротился во время передачи");
+                    position += sent;
+                }
+            }
+            rangeHeader.clear();
+            rangeHeader.putLong(-1).flip();
+            writeFully(channel, rangeHeader);
+
+            ByteBuffer response = ByteBuffer.allocate(1);
+            return channel.read(response) == 1 && response.get(0) == 1;
+        }
+    }
+
+    private void sendFileResumable(Path file, byte[] fileNameBytes, long fileSize) throws IOException {
+        long uploadId = uploadId(file, fileSize);
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                if (sendResumableAttempt(file, fileNameBytes, fileSize, uploadId)) {
+                    System.out.println("Успешная передача файла.");
+                } else {
+                    System.out.println("Ошибка при передаче файла.");
+                }
+                return;
+            } catch (IOException e) {
+                if (attempt == RESUME_ATTEMPTS)
+                    throw e;
+                System.out.println("Обрыв передачи (" + e.getMessage() + "), повтор " + attempt + " из " + (RESUME_ATTEMPTS - 1));
+                try {
+                    Thread.sleep(1000L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private boolean sendResumableAttempt(Path file, byte[] fileNameBytes, long fileSize, long uploadId) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(serverAddress, serverPort));
+             FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            // заголовок
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES + fileNameBytes.length + Long.BYTES);
+            header.putInt(OP_RESUME).putLong(uploadId).putInt(fileNameBytes.length).put(fileNameBytes).putLong(fileSize).flip();
+            writeFully(channel, header);
+
+            ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES);
+            while (offsetBuffer.hasRemaining())
+                if (channel.read(offsetBuffer) == -1)
+                    throw new EOFException("Сервер закрыл соединение");
+            long position = offsetBuffer.getLong(0);
+            // сервер ещё держит оборванное соединение этой загрузки - обычное дело при быстром переподключении
+            if (position == RESUME_BUSY)
+                throw new IOException("Загрузка ещё принимается предыдущим соединением");
+            if (position < 0 || position > fileSize) {
+                System.out.println("Сервер отказал в докачке");
+                return false;
+            }
+            if (position > 0)
+                System.out.println("Продолжение с " + position + " байт");
+
+            ByteBuffer buffer = zeroCopy ? null : ByteBuffer.allocate(64 * 1024);
+            while (position < fileSize) {
+                long sent;
+                if (zeroCopy) {
+                    sent = fc.transferTo(position, fileSize - position, channel);
+                } else {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), fileSize - position));
+                    sent = fc.read(buffer, position);
+                    if (sent > 0) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                    }
+                }
+                if (sent <= 0)
+                    throw new IOException("Файл укоротился во время передачи");
+                position += sent;
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(1);
+            return channel.read(response) == 1 && response.get(0) == 1;
+        }
+    }
+
+    private void sendFileDedup(Path file, byte[] fileNameBytes, long fileSize) throws IOException {
+        List<ContentChunker.Chunk> chunks;
+        try (InputStream in = Files.newInputStream(file)) {
+            chunks = ContentChunker.split(in);
+        }
+
+        try (Socket socket = new Socket(serverAddress, serverPort);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+             DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            // заголовок и список чанков
+            dos.writeInt(OP_DEDUP);
+            dos.writeInt(fileNameBytes.length);
+            dos.write(fileNameBytes);
+            dos.writeLong(fileSize);
+            dos.writeInt(chunks.size());
+            for (ContentChunker.Chunk chunk : chunks) {
+                dos.write(chunk.hash());
+                dos.writeInt(chunk.length());
+            }
+            dos.flush();
+
+            // недостающие чанки
+            int missingCount = dis.readInt();
+            long sentBytes = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(ContentChunker.MAX_CHUNK);
+            for (int i = 0; i < missingCount; ++i) {
+                ContentChunker.Chunk chunk = chunks.get(dis.readInt());
+                buffer.clear().limit(chunk.length());
+                while (buffer.hasRemaining())
+                    if (fc.read(buffer, chunk.offset() + buffer.position()) == -1)
+                        throw new IOException("Файл укоротился во время передачи");
+                dos.write(buffer.array(), 0, chunk.length());
+                sentBytes += chunk.length();
+            }
+            dos.flush();
+            System.out.printf("Чанков: %d, отправлено: %d, байт отправлено: %d из %d %n",
+                    chunks.size(), missingCount, sentBytes, fileSize);
+
+            int response = dis.readByte();
+            if (response == STATUS_OK) {
+                System.out.println("Успешная передача файла.");
+            } else if (response == STATUS_CHECKSUM_MISMATCH) {
+                System.out.println("Ошибка при передаче файла: хеш чанка не совпал.");
+            } else {
+                System.out.println("Ошибка при передаче файла.");
+            }
+        }
+    }
+
+    private void sendFileCompressed(Path file, byte[] fileNameBytes, long fileSize) throws IOException {
+        try (Socket socket = new Socket(serverAddress, serverPort);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 2 * FRAME_SIZE));
+             DataInputStream dis = new DataInputStream(socket.getInputStream());
+             InputStream fis = Files.newInputStream(file)) {
+            // заголовок и предложение кодеков
+            dos.writeInt(OP_COMPRESSED);
+            dos.writeInt(fileNameBytes.length);
+            dos.write(fileNameBytes);
+            dos.writeLong(fileSize);
+            dos.writeByte(codecs.length);
+            dos.write(codecs);
+            dos.flush();
+            byte chosen = dis.readByte();
+            FrameCodec codec = FrameCodec.create(chosen);
+            System.out.println("Сжатие: " + FrameCodec.name(chosen));
+
+            // кадры
+            byte[] raw = new byte[FRAME_SIZE];
+            byte[] compressed = new byte[FRAME_SIZE];
+            long logical = 0;
+            long wire = 0;
+            int backoff = 1;
+            int skip = 0;
+            while (logical < fileSize) {
+                int rawLength = fis.readNBytes(raw, 0, (int) Math.min(FRAME_SIZE, fileSize - logical));
+                if (rawLength == 0)
+                    throw new IOException("Файл укоротился во время передачи");
+                int wireLength = -1;
+                boolean attempted = false;
+                if (codec != null) {
+                    if (skip > 0) {
+                        --skip;
+                    } else {
+                        attempted = true;
+                        wireLength = codec.compress(raw, rawLength, compressed);
+                    }
+                }
+
+                dos.writeInt(rawLength);
+                if (wireLength > 0) {
+                    backoff = 1;
+                    dos.writeInt(wireLength);
+                    dos.write(compressed, 0, wireLength);
+                } else {
+                    // уже сжатые данные: не тратить CPU на следующие кадры
+                    if (attempted) {
+                        skip = backoff;
+                        backoff = Math.min(backoff * 2, MAX_COMPRESSION_BACKOFF);
+                    }
+                    wireLength = rawLength;
+                    dos.writeInt(rawLength);
+                    dos.write(raw, 0, rawLength);
+                }
+                logical += rawLength;
+                wire += 2L * Integer.BYTES + wireLength;
+            }
+            dos.flush();
+            System.out.printf("Байт исходных: %d, отправлено: %d (x%.2f) %n", logical, wire, logical / (double) Math.max(wire, 1));
+
+            int response = dis.readByte();
+            if (response == STATUS_OK) {
+                System.out.println("Успешная передача файла.");
+            } else {
+                System.out.println("Ошибка при передаче файла.");
+            }
+        }
+    }
+
+    // каталог целиком одной сессией: файлы идут подряд без ожидания ответа на каждый,
+    // имена - пути от самого каталога включительно (photos/2024/a.jpg), разделитель '/',
+    // так что абсолютный путь или ../ в аргументе не уводит их за uploads; остальные режимы здесь не применяются
+    private void sendDirectory(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        Path root = dir.toAbsolutePath().normalize();
+        Path base = root.getParent() != null ? root.getParent() : root;
+
+        try (Socket socket = new Socket(serverAddress, serverPort)) {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            // статусы читаются параллельно с отправкой, иначе сервер упрётся в заполненный буфер сокета
+            byte[] statuses = new byte[files.size()];
+            FutureTask<Integer> reader = new FutureTask<>(() -> {
+                int received = 0;
+                int count;
+                while ((count = dis.readInt()) != 0) {
+                    if (count < 0 || count > statuses.length - received)
+                        throw new IOException("Некорректная пачка статусов: " + count);
+                    dis.readFully(statuses, received, count);
+                    received += count;
+                }
+                return received;
+            });
+            Thread readerThread = new Thread(reader, "session-status-reader");
+            readerThread.start();
+
+            // если сервер оборвал сессию на кривом заголовке, он успевает прислать статусы принятых файлов:
+            // они выводятся до ошибки отправки
+            byte[] buffer = new byte[8192];
+            boolean[] skipped = new boolean[files.size()];
+            IOException sendError = null;
+            try {
+                dos.writeInt(OP_SESSION);
+                for (int i = 0; i < files.size(); ++i) {
+                    Path file = files.get(i);
+                    String name = base.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+                    byte[] fileNameBytes = name.getBytes(StandardCharsets.UTF_8);
+                    long fileSize = Files.size(file);
+                    if (fileNameBytes.length > MAX_FILENAME_SIZE || fileSize > MAX_FILE_SIZE) {
+                        System.out.println("Пропущен: " + file);
+                        skipped[i] = true;
+                        continue;
+                    }
+                    dos.writeInt(fileNameBytes.length);
+                    dos.write(fileNameBytes);
+                    dos.writeLong(fileSize);
+                    long remaining = fileSize;
+                    try (FileInputStream fis = new FileInputStream(file.toFile())) {
+                        int bytesRead;
+                        while (remaining > 0 && (bytesRead = fis.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                            dos.write(buffer, 0, bytesRead);
+                            remaining -= bytesRead;
+                        }
+                    }
+                    if (remaining > 0)
+                        throw new IOException("Файл укоротился во время передачи: " + file);
+                }
+                dos.writeInt(0);
+                dos.flush();
+            } catch (IOException e) {
+                sendError = e;
+                // сервер, ждущий остаток файла, получит конец потока и закроет соединение - читатель статусов не повиснет
+                try {
+                    socket.shutdownOutput();
+                } catch (IOException ignored) {
+                }
+            }
+
+            int acknowledged;
+            try {
+                acknowledged = reader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Передача прервана");
+            } catch (ExecutionException e) {
+                if (sendError != null)
+                    throw sendError;
+                throw new IOException("Ошибка при чтении статусов: " + e.getCause().getMessage());
+            }
+
+            // пропущенные клиентом файлы не занимают места в ответах сервера
+            int ok = 0;
+            int index = 0;
+            for (int i = 0; i < files.size(); ++i) {
+                if (skipped[i])
+                    continue;
+                if (index < acknowledged && statuses[index] == STATUS_OK)
+                    ++ok;
+                else
+                    System.out.println("Ошибка при передаче файла: " + files.get(i));
+                ++index;
+            }
+            System.out.println("Передано файлов: " + ok + " из " + files.size());
+            if (sendError != null)
+                throw sendError;
+        }
+    }
+
+    // id загрузки не меняется между попытками, пока не изменился сам файл
+    private static long uploadId(Path file, long fileSize) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(file.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+            md.update(ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(fileSize)
+                    .putLong(Files.getLastModifiedTime(file).toMillis())
+                    .flip());
+            return ByteBuffer.wrap(md.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
     public static void main(String[] args) {
-        if (args.length != 3) {
-            System.out.println("Использование: java Client {путь_к_файлу} {адрес_сервера} {порт}");
+        if (args.length < 3) {
+            System.out.println("Использование: java Client {путь_к_файлу_или_каталогу} {адрес_сервера} {порт} [--zero-copy] [--streams N] [--chunk-size байт] [--resume] [--checksum [алгоритм]] [--dedup] [--compress [lz,deflate,none]]");
             return;
         }
         String filePath = args[0];
@@ -87,6 +625,35 @@ public class Client {
         int serverPort = Integer.parseInt(args[2]);
 
         Client client = new Client(filePath, serverAddress, serverPort);
+        for (int i = 3; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--zero-copy" -> client.setZeroCopy(true);
+                case "--streams" -> client.setStreams(Integer.parseInt(args[++i]));
+                case "--chunk-size" -> client.setChunkSize(Long.parseLong(args[++i]));
+                case "--resume" -> client.setResume(true);
+                case "--dedup" -> client.setDedup(true);
+                case "--compress" -> {
+                    String list = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : "lz,deflate";
+                    String[] names = list.split(",");
+                    byte[] ids = new byte[names.length];
+                    for (int j = 0; j < names.length; ++j) {
+                        Byte id = FrameCodec.byName(names[j].trim());
+                        if (id == null) {
+                            System.out.println("Неизвестный кодек: " + names[j]);
+                            return;
+                        }
+                        ids[j] = id;
+                    }
+                    client.setCompression(ids);
+                }
+                case "--checksum" -> client.setChecksum(i + 1 < args.length && !args[i + 1].startsWith("--")
+                        ? args[++i] : TransferDigest.DEFAULT_ALGORITHM);
+                default -> {
+                    System.out.println("Неизвестный параметр: " + args[i]);
+                    return;
+                }
+            }
+        }
         try {
             client.sendFile();
         } catch (IOException e) {
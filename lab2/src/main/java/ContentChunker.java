@@ -0,0 +1,66 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// разбиение потока на чанки по содержимому (gear-хеш, как в FastCDC): границы зависят только
+// от соседних байт, так что вставка в начало файла сдвигает лишь один-два чанка
+class ContentChunker {
+    static final int MIN_CHUNK = 2 * 1024;
+    static final int MAX_CHUNK = 64 * 1024;
+    // в среднем граница через 8 КБ после минимума
+    private static final long MASK = (1L << 13) - 1;
+    static final int HASH_SIZE = 32;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // таблица должна совпадать у всех клиентов, иначе одинаковые файлы режутся по-разному
+        SplittableRandom random = new SplittableRandom(0x6C616232L);
+        for (int i = 0; i < GEAR.length; ++i)
+            GEAR[i] = random.nextLong();
+    }
+
+    record Chunk(long offset, int length, byte[] hash) {
+    }
+
+    static List<Chunk> split(InputStream in) throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        byte[] buffer = new byte[64 * 1024];
+        long chunkStart = 0;
+        long position = 0;
+        int chunkLength = 0;
+        long hash = 0;
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            int from = 0;
+            for (int i = 0; i < bytesRead; ++i) {
+                hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+                ++chunkLength;
+                if ((chunkLength >= MIN_CHUNK && (hash & MASK) == 0) || chunkLength == MAX_CHUNK) {
+                    sha.update(buffer, from, i + 1 - from);
+                    chunks.add(new Chunk(chunkStart, chunkLength, sha.digest()));
+                    from = i + 1;
+                    chunkStart = position + i + 1;
+                    chunkLength = 0;
+                    hash = 0;
+                }
+            }
+            sha.update(buffer, from, bytesRead - from);
+            position += bytesRead;
+        }
+        if (chunkLength > 0)
+            chunks.add(new Chunk(chunkStart, chunkLength, sha.digest()));
+        return chunks;
+    }
+}
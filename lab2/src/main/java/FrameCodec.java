@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// сжатие тела по кадрам; коды кодеков согласуются в рукопожатии после заголовка.
+// Экземпляр не потокобезопасен: по одному на соединение
+abstract class FrameCodec {
+    static final byte NONE = 0;
+    static final byte DEFLATE = 1;
+    static final byte LZ = 2;
+
+    // null - кодек неизвестен
+    static FrameCodec create(byte id) {
+        return switch (id) {
+            case DEFLATE -> new DeflateCodec();
+            case LZ -> new LzCodec();
+            default -> null;
+        };
+    }
+
+    static String name(byte id) {
+        return switch (id) {
+            case NONE -> "none";
+            case DEFLATE -> "deflate";
+            case LZ -> "lz";
+            default -> "codec#" + id;
+        };
+    }
+
+    // null - имя неизвестно
+    static Byte byName(String name) {
+        return switch (name) {
+            case "none" -> NONE;
+            case "deflate" -> DEFLATE;
+            case "lz" -> LZ;
+            default -> null;
+        };
+    }
+
+    // сжатый размер, если он строго меньше length, иначе -1 (кадр выгоднее отправить как есть);
+    // dst не короче length
+    abstract int compress(byte[] src, int length, byte[] dst);
+
+    abstract void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException;
+
+
+    private static class DeflateCodec extends FrameCodec {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final Inflater inflater = new Inflater(true);
+
+        @Override
+        int compress(byte[] src, int length, byte[] dst) {
+            deflater.reset();
+            deflater.setInput(src, 0, length);
+            deflater.finish();
+            int written = deflater.deflate(dst, 0, length - 1);
+            return deflater.finished() ? written : -1;
+        }
+
+        @Override
+        void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+            inflater.reset();
+            inflater.setInput(src, 0, length);
+            try {
+                int read = 0;
+                while (read < rawLength && !inflater.finished()) {
+                    int n = inflater.inflate(dst, read, rawLength - read);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        break;
+                    read += n;
+                }
+                // кадр, распаковывающийся в больше заявленного, тоже повреждён
+                if (read != rawLength || !inflater.finished())
+                    throw new IOException("Кадр deflate распаковался в " + read + " байт вместо " + rawLength);
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+
+    // быстрый LZ77 в духе блочного LZ4: последовательности (токен, литералы, смещение, длина совпадения),
+    // поиск совпадений по хеш-таблице 4-байтных слов без цепочек
+    private static class LzCodec extends FrameCodec {
+        private static final int MIN_MATCH = 4;
+        private static final int HASH_LOG = 14;
+        private static final int MAX_OFFSET = 0xFFFF;
+
+        private final int[] table = new int[1 << HASH_LOG];
+
+        @Override
+        int compress(byte[] src, int length, byte[] dst) {
+            Arrays.fill(table, -1);
+            int limit = length - 1;
+            int op = 0;
+            int anchor = 0;
+            int ip = 0;
+            while (ip + MIN_MATCH <= length) {
+                int sequence = readInt(src, ip);
+                int h = (sequence * -1640531535) >>> (32 - HASH_LOG);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ++ip;
+                    continue;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < length && src[ref + matchLength] == src[ip + matchLength])
+                    ++matchLength;
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op, limit);
+                if (op < 0)
+                    return -1;
+                ip += matchLength;
+                anchor = ip;
+            }
+            op = writeSequence(src, anchor, length - anchor, 0, 0, dst, op, limit);
+            return op;
+        }
+
+        // последовательность без совпадения (matchLength = 0) - последняя в кадре
+        private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength,
+                                         byte[] dst, int op, int limit) {
+            int needed = 1 + literalLength / 255 + 1 + literalLength + (matchLength > 0 ? 2 + matchLength / 255 + 1 : 0);
+            if (op + needed > limit)
+                return -1;
+            int matchCode = matchLength > 0 ? matchLength - MIN_MATCH : 0;
+            dst[op++] = (byte) ((Math.min(literalLength, 15) << 4) | Math.min(matchCode, 15));
+            op = writeLength(literalLength, dst, op);
+            System.arraycopy(src, literalStart, dst, op, literalLength);
+            op += literalLength;
+            if (matchLength > 0) {
+                dst[op++] = (byte) offset;
+                dst[op++] = (byte) (offset >>> 8);
+                op = writeLength(matchCode, dst, op);
+            }
+            return op;
+        }
+
+        private static int writeLength(int length, byte[] dst, int op) {
+            if (length < 15)
+                return op;
+            length -= 15;
+            while (length >= 255) {
+                dst[op++] = (byte) 255;
+                length -= 255;
+            }
+            dst[op++] = (byte) length;
+            return op;
+        }
+
+        @Override
+        void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+            int ip = 0;
+            int op = 0;
+            try {
+                while (ip < length) {
+                    int token = src[ip++] & 0xFF;
+                    int literalLength = token >>> 4;
+                    if (literalLength == 15) {
+                        int b;
+                        do {
+                            b = src[ip++] & 0xFF;
+                            literalLength += b;
+                        } while (b == 255);
+                    }
+                    if (op + literalLength > rawLength || ip + literalLength > length)
+                        throw new IOException("Повреждённый LZ-кадр");
+                    System.arraycopy(src, ip, dst, op, literalLength);
+                    ip += literalLength;
+                    op += literalLength;
+                    if (ip == length)
+                        break;
+
+                    int offset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                    int matchLength = token & 15;
+                    if (matchLength == 15) {
+                        int b;
+                        do {
+                            b = src[ip++] & 0xFF;
+                            matchLength += b;
+                        } while (b == 255);
+                    }
+                    matchLength += MIN_MATCH;
+                    if (offset == 0 || offset > op || op + matchLength > rawLength)
+                        throw new IOException("Повреждённый LZ-кадр");
+                    // совпадение может перекрываться с собой, поэтому копирование побайтное
+                    for (int i = 0; i < matchLength; ++i, ++op)
+                        dst[op] = dst[op - offset];
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Повреждённый LZ-кадр");
+            }
+            if (op != rawLength)
+                throw new IOException("LZ-кадр распаковался в " + op + " байт вместо " + rawLength);
+        }
+
+        private static int readInt(byte[] b, int i) {
+            return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+        }
+    }
+}
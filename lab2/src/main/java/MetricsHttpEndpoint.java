@@ -0,0 +1,42 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// GET http://127.0.0.1:{порт}/metrics - текущие ServerMetrics в текстовом виде; слушает только loopback
+class MetricsHttpEndpoint {
+    private final HttpServer httpServer;
+
+    MetricsHttpEndpoint(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", this::handle);
+    }
+
+    void start() {
+        httpServer.start();
+        System.out.println("Метрики: http://" + httpServer.getAddress().getHostString() + ":" + httpServer.getAddress().getPort() + "/metrics");
+    }
+
+    void stop() {
+        httpServer.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = ServerMetrics.get().render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// неблокирующий вариант Server: фиксированный набор потоков-селекторов вместо потока на клиента,
+// только базовый протокол (имя, размер, тело) и тот же ответный байт
+public class NioServer {
+    private final int port;
+    private final EventLoop[] loops;
+    private final Thread[] loopThreads;
+    private volatile ServerSocketChannel serverChannel;
+
+    private int connectionsCount = 0;
+
+    public NioServer(int port, int loopsCount) {
+        this.port = port;
+        this.loops = new EventLoop[Math.max(loopsCount, 1)];
+        this.loopThreads = new Thread[loops.length];
+    }
+
+    public void start() throws IOException {
+        Path uploadPath = Paths.get(Server.UPLOAD_DIR);
+        if (!Files.exists(uploadPath))
+            Files.createDirectory(uploadPath);
+
+        for (int i = 0; i < loops.length; ++i) {
+            loops[i] = new EventLoop();
+            loopThreads[i] = new Thread(loops[i], "nio-loop-" + i);
+            loopThreads[i].start();
+        }
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.serverChannel = serverChannel;
+            serverChannel.bind(new InetSocketAddress(port), Server.ACCEPT_BACKLOG);
+            System.out.println("Сервер (NIO, потоков: " + loops.length + ") запущен на порту " + port);
+            BandwidthScheduler scheduler = BandwidthScheduler.get();
+            while (true) {
+                scheduler.awaitAcceptSlot();
+                SocketChannel clientChannel;
+                try {
+                    clientChannel = serverChannel.accept();
+                } catch (IOException e) {
+                    scheduler.release(false);
+                    throw e;
+                }
+                // потоков на соединение нет, поэтому сверх maxActive ждёт сам accept
+                scheduler.admit();
+                ++connectionsCount;
+                loops[connectionsCount % loops.length].register(clientChannel, connectionsCount);
+            }
+        } catch (ClosedChannelException | InterruptedException e) {
+            // остановлен через stop()
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // прерывает start() и потоки-селекторы; незавершённые передачи обрываются
+    public void stop() {
+        try {
+            if (serverChannel != null)
+                serverChannel.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        for (Thread thread : loopThreads)
+            if (thread != null)
+                thread.interrupt();
+    }
+
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Connection> pending = new ConcurrentLinkedQueue<>();
+        // один буфер тела на поток: соединения одного селектора обрабатываются по очереди
+        private final ByteBuffer bodyBuffer = BufferPool.acquire();
+        // соединения, превысившие полосу, до момента возобновления чтения; трогаются только потоком селектора
+        private final PriorityQueue<Connection> paused = new PriorityQueue<>((a, b) -> Long.compare(a.resumeAt, b.resumeAt));
+
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel, int id) {
+            pending.add(new Connection(this, channel, id));
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (paused.isEmpty())
+                        selector.select();
+                    else
+                        selector.select(Math.max((paused.peek().resumeAt - System.nanoTime()) / 1_000_000, 1));
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                    break;
+                }
+
+                Connection conn;
+                while ((conn = pending.poll()) != null)
+                    conn.open(selector);
+                long now = System.nanoTime();
+                while (!paused.isEmpty() && paused.peek().resumeAt <= now)
+                    paused.poll().resume();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isReadable())
+                        connection.onReadable(bodyBuffer);
+                    else if (key.isWritable())
+                        connection.onWritable();
+                }
+            }
+
+            paused.clear();
+            // остановка: закрываются все соединения этого селектора
+            for (SelectionKey key : selector.keys())
+                ((Connection) key.attachment()).close();
+            BufferPool.release(bodyBuffer);
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        void pause(Connection connection, long nanos) {
+            connection.resumeAt = System.nanoTime() + nanos;
+            connection.key.interestOps(0);
+            paused.add(connection);
+        }
+    }
+
+
+    private enum State { NAME_LENGTH, NAME, SIZE, BODY, REPLY, CLOSED }
+
+    private class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final int id;
+        private SelectionKey key;
+        private String clientAddr = "?";
+
+        private State state = State.NAME_LENGTH;
+        private ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        private String receivedFilename;
+        private Path targetPath;
+        private UploadFile file;
+        private long fileSize;
+        private long received;
+        private byte status;
+
+        private final TransferStats stats;
+        private BandwidthScheduler.Flow flow;
+        private long resumeAt;
+
+        Connection(EventLoop loop, SocketChannel channel, int id) {
+            this.loop = loop;
+            this.channel = channel;
+            this.id = id;
+            this.stats = new TransferStats(id);
+        }
+
+        void open(Selector selector) {
+            try {
+                ServerMetrics.get().connectionOpened();
+                clientAddr = channel.getRemoteAddress().toString();
+                flow = BandwidthScheduler.get().open(channel.socket().getInetAddress());
+                System.out.println("\nСоединение с: " + clientAddr);
+                channel.configureBlocking(false);
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                System.out.println("Ошибка при обработке клиента " + clientAddr + ": " + e.getMessage());
+                close();
+            }
+        }
+
+        void onReadable(ByteBuffer bodyBuffer) {
+            try {
+                while (state != State.REPLY && state != State.CLOSED) {
+                    int bytesRead;
+                    if (state == State.BODY) {
+                        bodyBuffer.clear();
+                        bodyBuffer.limit((int) Math.min(bodyBuffer.capacity(), fileSize - received));
+                        bytesRead = channel.read(bodyBuffer);
+                        if (bytesRead > 0) {
+                            bodyBuffer.flip();
+                            file.write(bodyBuffer);
+                            stats.add(bytesRead);
+                            received += bytesRead;
+                            if (received == fileSize) {
+                                finishBody();
+                            } else {
+                                // сверх лимита полосы чтение снимается с селектора, сокет копит данные
+                                long pause = flow.pace(bytesRead);
+                                if (pause > 0) {
+                                    loop.pause(this, pause);
+                                    return;
+                                }
+                            }
+                        }
+                    } else {
+                        bytesRead = channel.read(header);
+                        if (!header.hasRemaining() && !onHeaderPart())
+                            return;
+                    }
+
+                    if (bytesRead == -1) {
+                        onEndOfStream();
+                        return;
+                    }
+                    if (bytesRead == 0)
+                        return;
+                }
+            } catch (IOException e) {
+                System.out.println("Ошибка при обработке клиента " + clientAddr + ": " + e.getMessage());
+                stats.finish(false);
+                reply((byte) 0);
+            }
+        }
+
+        // разбор очередной части заголовка; false - соединение закрыто
+        private boolean onHeaderPart() throws IOException {
+            header.flip();
+            switch (state) {
+                case NAME_LENGTH -> {
+                    // длина имени файла
+                    int filenameLength = header.getInt();
+                    // отрицательное значение - код режима (OP_CHUNKED, OP_SESSION, ...): их обслуживает только Server,
+                    // клиент получает явный отказ, а не оборванный поток
+                    if (filenameLength < 0) {
+                        System.out.println("Режим " + filenameLength + " не поддерживается NIO-сервером: " + clientAddr);
+                        ServerMetrics.get().headerRejected();
+                        reply(Server.STATUS_FAILED);
+                        return false;
+                    }
+                    if (filenameLength > Server.MAX_FILENAME_SIZE || filenameLength < 1) {
+                        System.out.println("Некорректная длина имени файла: " + filenameLength);
+                        ServerMetrics.get().headerRejected();
+                        close();
+                        return false;
+                    }
+                    header = ByteBuffer.allocate(filenameLength);
+                    state = State.NAME;
+                }
+                case NAME -> {
+                    // полученное имя файла (путь)
+                    receivedFilename = StandardCharsets.UTF_8.decode(header).toString();
+                    targetPath = Server.resolveTargetPath(receivedFilename, id);
+                    if (targetPath == null) {
+                        close();
+                        return false;
+                    }
+                    header = ByteBuffer.allocate(Long.BYTES);
+                    state = State.SIZE;
+                }
+                case SIZE -> {
+                    // размер файла
+                    fileSize = header.getLong();
+                    if (!Server.checkFileSize(fileSize)) {
+                        close();
+                        return false;
+                    }
+                    header = null;
+                    file = UploadFile.create(targetPath, fileSize);
+                    stats.start();
+                    state = State.BODY;
+                    if (fileSize == 0)
+                        finishBody();
+                }
+                default -> throw new IllegalStateException(state.name());
+            }
+            return true;
+        }
+
+        void resume() {
+            if (state == State.BODY && key.isValid())
+                key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void onEndOfStream() {
+            if (state == State.BODY) {
+                finishBody();
+            } else {
+                close();
+            }
+        }
+
+        private void finishBody() {
+            long totalBytesRead = received;
+            stats.finish(totalBytesRead == fileSize);
+            stats.printSummary();
+
+            if (totalBytesRead == fileSize) {
+                System.out.println("Файл " + receivedFilename + " успешно принят от " + clientAddr);
+                reply((byte) 1);
+            } else {
+                System.out.println("Ошибка: ожидаемый размер " + fileSize + ", получено " + totalBytesRead);
+                reply((byte) 0);
+            }
+        }
+
+        private void reply(byte status) {
+            this.status = status;
+            state = State.REPLY;
+            closeFile();
+            onWritable();
+        }
+
+        void onWritable() {
+            try {
+                if (channel.write(ByteBuffer.wrap(new byte[] { status })) == 0) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            } catch (IOException e) {
+                ;
+            }
+            close();
+        }
+
+        private void closeFile() {
+            try {
+                if (file != null)
+                    file.close();
+            } catch (IOException e) {
+                System.out.println("Ошибка при закрытии файла: " + e.getMessage());
+            }
+            file = null;
+        }
+
+        private void close() {
+            if (state == State.CLOSED)
+                return;
+            state = State.CLOSED;
+            stats.finish(false);
+            ServerMetrics.get().connectionClosed();
+            if (flow != null)
+                flow.close();
+            BandwidthScheduler.get().release(true);
+            closeFile();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Ошибка при закрытии соединения: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,157 +1,776 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class Server {
-    private static final int MAX_FILENAME_SIZE = 4096;
-    private static final long MAX_FILE_SIZE = 1L << 40;
-    private static final String UPLOAD_DIR = "uploads";
+    static final int MAX_FILENAME_SIZE = 4096;
+    static final long MAX_FILE_SIZE = 1L << 40;
+    static final String UPLOAD_DIR = System.getProperty("lab2.uploads", "uploads");
+    static final int ACCEPT_BACKLOG = 1024;
+
+    // отрицательная длина имени в начале заголовка - код расширенного протокола
+    static final int OP_CHUNKED = -1;
+    static final int OP_RESUME = -2;
+    static final int OP_CHECKED = -3;
+    static final int OP_DEDUP = -4;
+    static final int OP_COMPRESSED = -5;
+    static final int OP_SESSION = -6;
+
+    // ответные байты
+    static final byte STATUS_FAILED = 0;
+    static final byte STATUS_OK = 1;
+    static final byte STATUS_CHECKSUM_MISMATCH = 2;
+    // ответ докачки вместо смещения: загрузку держит прежнее соединение (стоит повторить позже)
+    // или заголовок отклонён (повтор не поможет)
+    static final long RESUME_BUSY = -1;
+    static final long RESUME_REJECTED = -2;
+    private static final int MAX_DIGEST_SIZE = 64;
+    static final int MAX_FRAME_SIZE = 1 << 20;
+    // статусы сессии отправляются пачками не больше этой
+    private static final int MAX_STATUS_BATCH = 256;
+
+    private static final int TRANSFER_CHUNK_SIZE = 1 << 20;
+    // как часто фиксировать докачиваемый файл в журнале
+    private static final long JOURNAL_COMMIT_INTERVAL = 16L << 20;
+    // --fsync N: интервал в мегабайтах, сверху - размер самого большого файла
+    private static final long MAX_FSYNC_INTERVAL_MB = MAX_FILE_SIZE >> 20;
 
     private final int port;
-    private final ExecutorService threadPool = Executors.newCachedThreadPool();
+    private ExecutorService threadPool;
+    private volatile ServerSocketChannel serverChannel;
 
     private int connectionsCount = 0;
+    private boolean zeroCopy = false;
+    private boolean virtualThreads = false;
+    private boolean dedupLazy = false;
 
     public Server(int port) {
         this.port = port;
     }
 
+    // приём тела через FileChannel.transferFrom из канала сокета, без промежуточного byte[]
+    public void setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    // каждый ClientHandler в своём виртуальном потоке: десятки тысяч медленных клиентов без платформенных потоков
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    // дедуплицированные загрузки сохраняются только манифестом, файл собирается по требованию (java ChunkStore)
+    public void setDedupLazy(boolean dedupLazy) {
+        this.dedupLazy = dedupLazy;
+    }
+
     public void start() throws IOException {
+        threadPool = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
         Path uploadPath = Paths.get(UPLOAD_DIR);
         if (!Files.exists(uploadPath))
             Files.createDirectory(uploadPath);
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Сервер запущен на порту " + port);
+        // сокеты принимаются через канал, чтобы у них был getChannel() для transferFrom
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.serverChannel = serverChannel;
+            serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            System.out.println("Сервер запущен на порту " + port + (virtualThreads ? " (виртуальные потоки)" : ""));
+            BandwidthScheduler scheduler = BandwidthScheduler.get();
             while (true) {
-                Socket clientSocket = serverSocket.accept();
+                // ограниченная очередь допуска: при заполнении соединения остаются в backlog ядра
+                scheduler.awaitAcceptSlot();
+                Socket clientSocket;
+                try {
+                    clientSocket = serverChannel.accept().socket();
+                } catch (IOException e) {
+                    scheduler.release(false);
+                    throw e;
+                }
                 ++connectionsCount;
-                threadPool.submit(new ClientHandler(clientSocket, connectionsCount));
+                threadPool.submit(new ClientHandler(clientSocket, connectionsCount, zeroCopy, dedupLazy));
             }
+        } catch (ClosedChannelException | InterruptedException e) {
+            // остановлен через stop()
         } catch (Exception e) {
             System.out.println(e.getMessage());
         }
     }
 
+    // прерывает start(); незавершённые передачи обрываются
+    public void stop() {
+        try {
+            if (serverChannel != null)
+                serverChannel.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        if (threadPool != null)
+            threadPool.shutdownNow();
+    }
+
+
+    // проверка пути (не вне uploads после нормализации), создание директорий и подбор имени;
+    // null, если путь выходит за пределы uploads
+    static Path resolveTargetPath(String receivedFilename, int id) throws IOException {
+        return resolveTargetPath(receivedFilename, id, true);
+    }
+
+    // renameExisting = false: существующий файл не переименовывается, путь возвращается как есть
+    // и создание с CREATE_NEW откажет - так в сессии каталога каждое совпадение имени даёт ошибку файла
+    static Path resolveTargetPath(String receivedFilename, int id, boolean renameExisting) throws IOException {
+        Path uploadsDirPath = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
+        Path targetPath = uploadsDirPath.resolve(receivedFilename).normalize();
+        if (!targetPath.startsWith(uploadsDirPath)) {
+            System.out.println("Попытка записи вне директории uploads: " + receivedFilename);
+            ServerMetrics.get().headerRejected();
+            return null;
+        }
+
+        // создание директорий
+        Path parentDir = targetPath.getParent();
+        if (parentDir != null && !Files.exists(parentDir)) {
+            Files.createDirectories(parentDir);
+            System.out.println("Созданы директории: " + parentDir);
+        }
+
+        // проверка имени файла
+        Path filename = targetPath.getFileName();
+        if (!renameExisting && Files.exists(targetPath))
+            return targetPath;
+        if (filename == null || filename.toString().trim().isEmpty() || Files.exists(targetPath)) {
+            filename = Paths.get("newfile" + id);
+            assert parentDir != null;
+            targetPath = parentDir.resolve(filename);
+            System.out.println("Некорректное имя, присвоено новое: " + targetPath);
+        }
+        return targetPath;
+    }
+
+    static boolean checkFileSize(long fileSize) {
+        if (fileSize > MAX_FILE_SIZE || fileSize < 0) {
+            System.out.println("Некорректный размер файла: " + fileSize);
+            ServerMetrics.get().headerRejected();
+            return false;
+        }
+        return true;
+    }
 
     private static class ClientHandler implements Runnable {
         private final Socket clientSocket;
         private final int id;
-        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final boolean zeroCopy;
+        private final boolean dedupLazy;
+        private final TransferStats stats;
+        private BandwidthScheduler.Flow flow;
+        // занимает место среди активных передач планировщика
+        private boolean admitted = false;
 
-        private long startTime = 0;
-        private final int PERIOD = 3;
-        private final AtomicLong prevBytes = new AtomicLong(0);
-        private final AtomicLong currentBytes = new AtomicLong(0);
-
-        public ClientHandler(Socket socket, int id) {
+        public ClientHandler(Socket socket, int id, boolean zeroCopy, boolean dedupLazy) {
             this.clientSocket = socket;
             this.id = id;
+            this.zeroCopy = zeroCopy;
+            this.dedupLazy = dedupLazy;
+            this.stats = new TransferStats(id);
+        }
+
+        // тело читается из канала сокета в буфер из пула (заголовок прочитан небуферизованным DataInputStream,
+        // так что в потоке ничего не застряло); digest (может быть null) обновляется тем же буфером
+        private void receiveStream(Path targetPath, long fileSize, TransferDigest digest) throws IOException {
+            try (UploadFile file = UploadFile.create(targetPath, fileSize)) {
+                receiveStream(file, fileSize, digest);
+            }
+        }
+
+        private void receiveStream(UploadFile file, long fileSize, TransferDigest digest) throws IOException {
+            SocketChannel channel = clientSocket.getChannel();
+            ByteBuffer buffer = BufferPool.acquire();
+            try {
+                while (file.written() < fileSize) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - file.written()));
+                    int bytesRead = channel.read(buffer);
+                    if (bytesRead == -1)
+                        break;
+                    buffer.flip();
+                    if (digest != null) {
+                        digest.update(buffer);
+                        buffer.rewind();
+                    }
+                    file.write(buffer);
+                    stats.add(bytesRead);
+                    flow.consume(bytesRead);
+                }
+            } finally {
+                BufferPool.release(buffer);
+            }
+        }
+
+        // заголовок уже прочитан через небуферизованный DataInputStream, так что тело целиком в канале
+        private void receiveZeroCopy(Path targetPath, long fileSize) throws IOException {
+            SocketChannel channel = clientSocket.getChannel();
+            try (UploadFile file = UploadFile.create(targetPath, fileSize)) {
+                while (file.written() < fileSize) {
+                    // кусками, чтобы счётчики статистики обновлялись по ходу передачи
+                    long transferred = file.channel().transferFrom(channel, file.written(), Math.min(TRANSFER_CHUNK_SIZE, fileSize - file.written()));
+                    if (transferred <= 0) // конец потока
+                        break;
+                    file.advance(transferred);
+                    stats.add(transferred);
+                    flow.consume(transferred);
+                }
+            }
+        }
+
+        // трейлер: длина суммы и сама сумма, посчитанная клиентом
+        private static boolean checkTrailer(DataInputStream in, TransferDigest digest) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_DIGEST_SIZE)
+                return false;
+            byte[] expected = new byte[length];
+            in.readFully(expected);
+            return MessageDigest.isEqual(expected, digest.finish());
+        }
+
+        // null - некорректная длина имени
+        private static String readFilename(DataInputStream in, int filenameLength) throws IOException {
+            if (filenameLength > MAX_FILENAME_SIZE || filenameLength < 1) {
+                System.out.println("Некорректная длина имени файла: " + filenameLength);
+                ServerMetrics.get().headerRejected();
+                return null;
+            }
+            byte[] filenameBytes = new byte[filenameLength];
+            in.readFully(filenameBytes);
+            return new String(filenameBytes, StandardCharsets.UTF_8);
+        }
+
+        // докачиваемая загрузка: id загрузки, имя, размер; в ответ смещение, с которого слать тело
+        // (или RESUME_BUSY / RESUME_REJECTED), затем тело от этого смещения и байт результата
+        private void receiveResumable(DataInputStream in, DataOutputStream out) throws IOException {
+            long uploadId = in.readLong();
+            String receivedFilename = readFilename(in, in.readInt());
+            if (receivedFilename == null) {
+                out.writeLong(RESUME_REJECTED);
+                return;
+            }
+            long fileSize = in.readLong();
+            if (!checkFileSize(fileSize)) {
+                out.writeLong(RESUME_REJECTED);
+                return;
+            }
+
+            if (!UploadJournal.acquire(uploadId)) {
+                System.out.println("Загрузка " + receivedFilename + " уже принимается другим соединением");
+                out.writeLong(RESUME_BUSY);
+                return;
+            }
+            try {
+                UploadJournal journal = UploadJournal.load(uploadId);
+                if (journal != null && (journal.fileSize() != fileSize
+                        || !journal.receivedFilename().equals(receivedFilename) || !Files.exists(journal.targetPath())))
+                    journal = null;
+
+                long offset;
+                if (journal != null) {
+                    // хвост после последней фиксации мог не дойти до диска
+                    offset = Math.min(journal.committed(), Files.size(journal.targetPath()));
+                    System.out.println("Докачка " + receivedFilename + " с " + offset + " байт в " + journal.targetPath());
+                } else {
+                    Path targetPath = resolveTargetPath(receivedFilename, id);
+                    if (targetPath == null) {
+                        out.writeLong(RESUME_REJECTED);
+                        return;
+                    }
+                    Files.createFile(targetPath);
+                    journal = new UploadJournal(uploadId, receivedFilename, targetPath, fileSize, 0);
+                    journal.commit(0);
+                    offset = 0;
+                }
+                out.writeLong(offset);
+                out.flush();
+
+                stats.start();
+                long position = offset;
+                ByteBuffer buffer = zeroCopy ? null : BufferPool.acquire();
+                try (FileChannel fc = FileChannel.open(journal.targetPath(), StandardOpenOption.WRITE)) {
+                    fc.truncate(offset);
+                    try {
+                        while (position < fileSize) {
+                            long bytesRead;
+                            if (zeroCopy) {
+                                bytesRead = fc.transferFrom(clientSocket.getChannel(), position, Math.min(TRANSFER_CHUNK_SIZE, fileSize - position));
+                            } else {
+                                buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - position));
+                                bytesRead = clientSocket.getChannel().read(buffer);
+                                buffer.flip();
+                                long writePosition = position;
+                                while (buffer.hasRemaining())
+                                    writePosition += fc.write(buffer, writePosition);
+                            }
+                            if (bytesRead <= 0)
+                                break;
+                            position += bytesRead;
+                            stats.add(bytesRead);
+                            flow.consume(bytesRead);
+                            if (position - journal.committed() >= JOURNAL_COMMIT_INTERVAL) {
+                                fc.force(false);
+                                journal.commit(position);
+                            }
+                        }
+                    } finally {
+                        // всё записанное фиксируется и при обрыве, чтобы следующая попытка начала с него
+                        stats.stop();
+                        fc.force(false);
+                        if (position < fileSize)
+                            journal.commit(position);
+                    }
+                } finally {
+                    BufferPool.release(buffer);
+                }
+
+                stats.finish(position == fileSize);
+                if (position == fileSize) {
+                    journal.delete();
+                    out.writeByte(1);
+                    System.out.println("Файл " + receivedFilename + " успешно принят от " + clientSocket.getRemoteSocketAddress());
+                } else {
+                    out.writeByte(0);
+                    System.out.println("Загрузка " + receivedFilename + " прервана на " + position + " из " + fileSize + " байт");
+                }
+            } finally {
+                UploadJournal.release(uploadId);
+            }
+        }
+
+        // дедуплицированная загрузка: имя, размер, число чанков и их (SHA-256, длина);
+        // в ответ число и индексы недостающих чанков, затем только их данные и байт результата
+        private void receiveDedup(DataInputStream in, DataOutputStream out) throws IOException {
+            String receivedFilename = readFilename(in, in.readInt());
+            if (receivedFilename == null)
+                return;
+            long fileSize = in.readLong();
+            if (!checkFileSize(fileSize))
+                return;
+            // все чанки, кроме последнего, не короче MIN_CHUNK, так что их число ограничено размером файла;
+            // память под список растёт по мере чтения, а не выделяется сразу по заявленному числу
+            int count = in.readInt();
+            long maxChunks = (fileSize + ContentChunker.MIN_CHUNK - 1) / ContentChunker.MIN_CHUNK;
+            if (count < 0 || count > maxChunks) {
+                System.out.println("Некорректное число чанков: " + count);
+                ServerMetrics.get().headerRejected();
+                return;
+            }
+            List<byte[]> hashPages = new ArrayList<>();
+            int[] lengths = new int[Math.min(count, ChunkStore.HASHES_PER_PAGE)];
+            long total = 0;
+            for (int i = 0; i < count; ++i) {
+                int slot = i % ChunkStore.HASHES_PER_PAGE;
+                if (slot == 0)
+                    hashPages.add(new byte[Math.min(count - i, ChunkStore.HASHES_PER_PAGE) * ContentChunker.HASH_SIZE]);
+                if (i == lengths.length)
+                    lengths = Arrays.copyOf(lengths, (int) Math.min(count, 2L * lengths.length));
+                in.readFully(hashPages.get(i / ChunkStore.HASHES_PER_PAGE), slot * ContentChunker.HASH_SIZE, ContentChunker.HASH_SIZE);
+                lengths[i] = in.readInt();
+                if (lengths[i] < 1 || lengths[i] > ContentChunker.MAX_CHUNK) {
+                    System.out.println("Некорректная длина чанка: " + lengths[i]);
+                    ServerMetrics.get().headerRejected();
+                    return;
+                }
+                total += lengths[i];
+            }
+            if (total != fileSize) {
+                System.out.println("Сумма длин чанков " + total + " не равна размеру файла " + fileSize);
+                ServerMetrics.get().headerRejected();
+                return;
+            }
+
+            Path targetPath = resolveTargetPath(receivedFilename, id);
+            if (targetPath == null)
+                return;
+            // с --dedup-lazy принятый файл существует только манифестом: имя с манифестом тоже занято
+            // и получает новое, как в остальных режимах, а не пересобирается на месте
+            if (dedupLazy && Files.exists(ChunkStore.manifestPath(targetPath))) {
+                targetPath = targetPath.resolveSibling("newfile" + id);
+                System.out.println("Имя занято, присвоено новое: " + targetPath);
+            }
+
+            // повторы внутри файла запрашиваются один раз
+            Set<String> requested = new HashSet<>();
+            List<Integer> missing = new ArrayList<>();
+            HexFormat hex = HexFormat.of();
+            for (int i = 0; i < count; ++i) {
+                byte[] page = hashPages.get(i / ChunkStore.HASHES_PER_PAGE);
+                int slot = i % ChunkStore.HASHES_PER_PAGE;
+                if (!ChunkStore.contains(page, slot)
+                        && requested.add(hex.formatHex(page, slot * ContentChunker.HASH_SIZE, (slot + 1) * ContentChunker.HASH_SIZE)))
+                    missing.add(i);
+            }
+            DataOutputStream bufferedOut = new DataOutputStream(new BufferedOutputStream(out));
+            bufferedOut.writeInt(missing.size());
+            for (int index : missing)
+                bufferedOut.writeInt(index);
+            bufferedOut.flush();
+            System.out.printf("Клиент %d, %s: чанков %d, недостающих %d %n", id, receivedFilename, count, missing.size());
+
+            stats.start();
+            boolean success = false;
+            try {
+                byte[] chunk = new byte[ContentChunker.MAX_CHUNK];
+                boolean intact = true;
+                for (int index : missing) {
+                    in.readFully(chunk, 0, lengths[index]);
+                    stats.add(lengths[index]);
+                    intact &= ChunkStore.store(hashPages.get(index / ChunkStore.HASHES_PER_PAGE),
+                            index % ChunkStore.HASHES_PER_PAGE, chunk, lengths[index]);
+                    flow.consume(lengths[index]);
+                }
+                if (!intact) {
+                    System.out.println("Ошибка: хеш полученного чанка не совпал, " + receivedFilename + " не сохранён");
+                } else {
+                    Path manifest = ChunkStore.manifestPath(targetPath);
+                    ChunkStore.writeManifest(manifest, fileSize, hashPages, lengths, !dedupLazy);
+                    if (!dedupLazy)
+                        ChunkStore.materialize(manifest, targetPath);
+                    success = true;
+                }
+            } finally {
+                stats.finish(success);
+                stats.printSummary();
+            }
+            if (success) {
+                out.writeByte(STATUS_OK);
+                System.out.println("Файл " + receivedFilename + " успешно принят от " + clientSocket.getRemoteSocketAddress()
+                        + (dedupLazy ? " (только манифест)" : ""));
+            } else {
+                out.writeByte(STATUS_CHECKSUM_MISMATCH);
+            }
+        }
+
+        // сжатая загрузка: обычный заголовок, затем число предложенных кодеков и их коды в порядке предпочтения;
+        // в ответ выбранный код, затем кадры (исходная длина, длина на проводе, данные) до fileSize байт
+        private void receiveCompressed(DataInputStream in, DataOutputStream out) throws IOException {
+            String receivedFilename = readFilename(in, in.readInt());
+            if (receivedFilename == null)
+                return;
+            Path targetPath = resolveTargetPath(receivedFilename, id);
+            if (targetPath == null)
+                return;
+            long fileSize = in.readLong();
+            if (!checkFileSize(fileSize))
+                return;
+
+            // первый знакомый кодек из предложенных; none поддерживается всегда
+            int offered = in.readUnsignedByte();
+            byte chosen = FrameCodec.NONE;
+            FrameCodec codec = null;
+            for (int i = 0; i < offered; ++i) {
+                byte id = in.readByte();
+                if (codec == null && FrameCodec.create(id) != null) {
+                    chosen = id;
+                    codec = FrameCodec.create(id);
+                }
+            }
+            out.writeByte(chosen);
+            out.flush();
+
+            stats.start();
+            long logical = 0;
+            byte[] wire = BufferPool.acquireArray(MAX_FRAME_SIZE);
+            byte[] raw = codec != null ? BufferPool.acquireArray(MAX_FRAME_SIZE) : null;
+            try (OutputStream fos = Files.newOutputStream(targetPath, StandardOpenOption.CREATE_NEW)) {
+                while (logical < fileSize) {
+                    int rawLength = in.readInt();
+                    int wireLength = in.readInt();
+                    if (rawLength < 1 || rawLength > MAX_FRAME_SIZE || rawLength > fileSize - logical
+                            || wireLength < 1 || wireLength > rawLength || (codec == null && wireLength != rawLength))
+                        throw new IOException("Некорректный кадр: " + rawLength + "/" + wireLength);
+                    in.readFully(wire, 0, wireLength);
+                    // кадр, который не сжался, клиент шлёт как есть
+                    if (wireLength == rawLength) {
+                        fos.write(wire, 0, rawLength);
+                    } else {
+                        codec.decompress(wire, wireLength, raw, rawLength);
+                        fos.write(raw, 0, rawLength);
+                    }
+                    stats.add(2L * Integer.BYTES + wireLength, rawLength);
+                    // на диск уходят распакованные байты
+                    flow.consume(rawLength);
+                    logical += rawLength;
+                }
+            } finally {
+                BufferPool.release(wire);
+                BufferPool.release(raw);
+                stats.finish(logical == fileSize);
+                stats.printSummary();
+            }
+            out.writeByte(STATUS_OK);
+            System.out.println("Файл " + receivedFilename + " (" + FrameCodec.name(chosen) + ") успешно принят от " + clientSocket.getRemoteSocketAddress());
+        }
+
+        // сессия из многих файлов: подряд (длина имени, имя, размер, тело) до длины имени 0;
+        // клиент не ждёт ответа на каждый файл, статусы идут пачками (число, байты статусов)
+        // перед каждой блокировкой на чтении, в конце - пустая пачка
+        private void receiveSession(DataInputStream in, DataOutputStream out) throws IOException {
+            DataOutputStream statusOut = new DataOutputStream(new BufferedOutputStream(out));
+            byte[] batch = new byte[MAX_STATUS_BATCH];
+            int batched = 0;
+            int files = 0;
+            int failed = 0;
+
+            stats.start();
+            try {
+                int filenameLength;
+                while ((filenameLength = in.readInt()) != 0) {
+                    // кривой заголовок ломает разбор потока, дальше читать нельзя; накопленные статусы
+                    // всё равно отправляются, чтобы клиент знал, какие файлы дошли
+                    String receivedFilename = readFilename(in, filenameLength);
+                    if (receivedFilename == null)
+                        break;
+                    long fileSize = in.readLong();
+                    if (!checkFileSize(fileSize))
+                        break;
+
+                    byte status = receiveSessionFile(in, receivedFilename, fileSize);
+                    ++files;
+                    if (status != STATUS_OK)
+                        ++failed;
+
+                    batch[batched++] = status;
+                    if (batched == batch.length || in.available() == 0) {
+                        statusOut.writeInt(batched);
+                        statusOut.write(batch, 0, batched);
+                        statusOut.flush();
+                        batched = 0;
+                    }
+                }
+                statusOut.writeInt(batched);
+                statusOut.write(batch, 0, batched);
+                statusOut.writeInt(0);
+                statusOut.flush();
+            } finally {
+                stats.finish(files > 0 && failed == 0);
+                stats.printSummary();
+                System.out.println("Клиент " + id + ": сессия из " + files + " файлов, с ошибкой " + failed);
+            }
         }
 
-        private void printStatistics() { // bytes per second
-            long currBytes = currentBytes.get();
-            double instantSpeed = (currBytes - prevBytes.get()) / (double)PERIOD;
-            prevBytes.set(currBytes);
-            double avgSpeed = currBytes / (Math.max((System.nanoTime() - startTime), 1) / 1_000_000_000.0);
-            System.out.printf("Клиент: %d, мгновенная скорость: %f, средняя за сеанс: %f, байт получено: %d %n", id, instantSpeed, avgSpeed, currBytes);
+        // тело файла, которому некуда писаться, вычитывается, чтобы не сбить разбор следующих
+        private byte receiveSessionFile(DataInputStream in, String receivedFilename, long fileSize) throws IOException {
+            UploadFile created = createSessionFile(receivedFilename, fileSize);
+            if (created != null) {
+                long before = stats.bytes();
+                try (UploadFile file = created) {
+                    receiveStream(file, fileSize, null);
+                }
+                if (stats.bytes() - before != fileSize)
+                    throw new EOFException("Соединение закрыто посреди файла " + receivedFilename);
+                return STATUS_OK;
+            }
+            long skipped = 0;
+            while (skipped < fileSize) {
+                long n = in.skip(fileSize - skipped);
+                if (n <= 0) {
+                    if (in.read() < 0)
+                        throw new EOFException("Соединение закрыто посреди файла " + receivedFilename);
+                    n = 1;
+                }
+                skipped += n;
+            }
+            return STATUS_FAILED;
+        }
+
+        // null - файл не создать: путь вне uploads, имя занято, на месте каталога лежит файл, нет прав
+        private UploadFile createSessionFile(String receivedFilename, long fileSize) {
+            try {
+                Path targetPath = resolveTargetPath(receivedFilename, id, false);
+                return targetPath != null ? UploadFile.create(targetPath, fileSize) : null;
+            } catch (FileAlreadyExistsException e) {
+                System.out.println("Файл уже существует: " + e.getFile());
+            } catch (IOException e) {
+                System.out.println("Не удалось создать файл " + receivedFilename + ": " + e);
+            }
+            return null;
         }
 
+        // соединение многопоточной загрузки: id сессии, имя, общий размер,
+        // затем диапазоны (смещение, длина, данные) до смещения -1
+        private void receiveChunked(DataInputStream in, DataOutputStream out) throws IOException {
+            long sessionId = in.readLong();
+            String receivedFilename = readFilename(in, in.readInt());
+            if (receivedFilename == null)
+                return;
+            long totalSize = in.readLong();
+            if (!checkFileSize(totalSize))
+                return;
+
+            // отказ уже учтён в метриках внутри join
+            ChunkedSession session = ChunkedSession.join(sessionId, receivedFilename, totalSize, id);
+            if (session == null) {
+                out.writeByte(0);
+                return;
+            }
+
+            stats.start();
+            ByteBuffer buffer = zeroCopy ? null : BufferPool.acquire();
+            try {
+                long offset;
+                while ((offset = in.readLong()) != -1) {
+                    long length = in.readLong();
+                    if (!session.reserve(offset, length)) {
+                        System.out.println("Некорректный диапазон " + offset + "+" + length + " в сессии " + sessionId);
+                        ServerMetrics.get().rangeRejected();
+                        session.fail();
+                        break;
+                    }
+                    long rangeRead = 0;
+                    while (rangeRead < length) {
+                        long bytesRead;
+                        if (zeroCopy) {
+                            bytesRead = session.file().transferFrom(clientSocket.getChannel(), offset + rangeRead,
+                                    Math.min(TRANSFER_CHUNK_SIZE, length - rangeRead));
+                        } else {
+                            buffer.clear().limit((int) Math.min(buffer.capacity(), length - rangeRead));
+                            bytesRead = clientSocket.getChannel().read(buffer);
+                            buffer.flip();
+                            long position = offset + rangeRead;
+                            while (buffer.hasRemaining())
+                                position += session.file().write(buffer, position);
+                        }
+                        if (bytesRead <= 0)
+                            throw new EOFException("Соединение закрыто посреди диапазона");
+                        rangeRead += bytesRead;
+                        stats.add(bytesRead);
+                        session.addReceived(bytesRead);
+                        flow.consume(bytesRead);
+                    }
+                }
+            } catch (IOException e) {
+                session.fail();
+                throw e;
+            } finally {
+                BufferPool.release(buffer);
+                stats.stop();
+            }
+
+            // свои диапазоны приняты; место активной передачи нужно потокам той же сессии, ждущим допуска
+            if (admitted) {
+                BandwidthScheduler.get().deactivate();
+                admitted = false;
+            }
+            boolean success = session.awaitCompletion();
+            stats.finish(success);
+            System.out.printf("Клиент %d, сессия %d: загружено %d байт за %f секунд %n",
+                    id, sessionId, stats.bytes(), stats.elapsedSeconds());
+            out.writeByte(success ? 1 : 0);
+        }
 
         @Override
         public void run() {
             String clientAddr = clientSocket.getRemoteSocketAddress().toString();
             System.out.println("\nСоединение с: " + clientAddr);
-            
+            ServerMetrics.get().connectionOpened();
+
             DataInputStream in = null;
             DataOutputStream out = null;
+            BandwidthScheduler scheduler = BandwidthScheduler.get();
             try {
+                scheduler.admit();
+                admitted = true;
+                flow = scheduler.open(clientSocket.getInetAddress());
                 in = new DataInputStream(clientSocket.getInputStream());
                 out = new DataOutputStream(clientSocket.getOutputStream());
 
                 // длина имени файла
                 int filenameLength = in.readInt();
-                if (filenameLength > MAX_FILENAME_SIZE || filenameLength < 1) {
-                    System.out.println("Некорректная длина имени файла: " + filenameLength);
+                if (filenameLength == OP_CHUNKED) {
+                    receiveChunked(in, out);
                     return;
                 }
-
-                // полученное имя файла (путь)
-                byte[] filenameBytes = new byte[filenameLength];
-                in.readFully(filenameBytes);
-                String receivedFilename = new String(filenameBytes, StandardCharsets.UTF_8);
-
-                // проверка пути (не вне uploads после нормализации)
-                Path uploadsDirPath = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
-                Path targetPath = uploadsDirPath.resolve(receivedFilename).normalize();
-                if (!targetPath.startsWith(uploadsDirPath)) {
-                    System.out.println("Попытка записи вне директории uploads: " + receivedFilename);
+                if (filenameLength == OP_RESUME) {
+                    receiveResumable(in, out);
                     return;
                 }
-
-                // создание директорий
-                Path parentDir = targetPath.getParent();
-                if (parentDir != null && !Files.exists(parentDir)) {
-                    Files.createDirectories(parentDir);
-                    System.out.println("Созданы директории: " + parentDir);
+                if (filenameLength == OP_DEDUP) {
+                    receiveDedup(in, out);
+                    return;
                 }
-
-                // проверка имени файла
-                Path filename = targetPath.getFileName();
-                if (filename == null || filename.toString().trim().isEmpty() || Files.exists(targetPath)) {
-                    filename = Paths.get("newfile" + id);
-                    assert parentDir != null;
-                    targetPath = parentDir.resolve(filename);
-                    System.out.println("Некорректное имя, присвоено новое: " + targetPath);
+                if (filenameLength == OP_COMPRESSED) {
+                    receiveCompressed(in, out);
+                    return;
+                }
+                if (filenameLength == OP_SESSION) {
+                    receiveSession(in, out);
+                    return;
+                }
+                // с контрольной суммой: имя алгоритма, затем обычный заголовок, тело и трейлер с суммой
+                TransferDigest digest = null;
+                if (filenameLength == OP_CHECKED) {
+                    String algorithm = in.readUTF();
+                    digest = TransferDigest.create(algorithm);
+                    if (digest == null) {
+                        System.out.println("Неподдерживаемый алгоритм контрольной суммы: " + algorithm);
+                        ServerMetrics.get().headerRejected();
+                        out.writeByte(STATUS_FAILED);
+                        return;
+                    }
+                    filenameLength = in.readInt();
                 }
 
+                // полученное имя файла (путь)
+                String receivedFilename = readFilename(in, filenameLength);
+                if (receivedFilename == null)
+                    return;
 
+                Path targetPath = resolveTargetPath(receivedFilename, id);
+                if (targetPath == null)
+                    return;
 
                 // размер файла
                 long fileSize = in.readLong();
-                if (fileSize > MAX_FILE_SIZE || fileSize < 0) {
-                    System.out.println("Некорректный размер файла: " + fileSize);
+                if (!checkFileSize(fileSize))
                     return;
-                }
-
-                scheduler.scheduleAtFixedRate(this::printStatistics, PERIOD, PERIOD, TimeUnit.SECONDS);
-
-                long totalBytesRead = 0;
-                startTime = System.nanoTime();
-                try (OutputStream fos = Files.newOutputStream(targetPath, StandardOpenOption.CREATE_NEW)) {
-                    byte[] buffer = new byte[8192];
-                    int bytesRead;
-
 
-                    while (totalBytesRead < fileSize && (bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, fileSize - totalBytesRead))) != -1) {
-                        fos.write(buffer, 0, bytesRead);
-                        totalBytesRead = currentBytes.addAndGet(bytesRead);
-                    }
+                stats.start();
+                boolean checksumMatches = true;
+                try {
+                    // сумма считается по байтам из сокета, поэтому с ней тело всегда идёт через буфер
+                    if (zeroCopy && digest == null)
+                        receiveZeroCopy(targetPath, fileSize);
+                    else
+                        receiveStream(targetPath, fileSize, digest);
+                    if (digest != null && stats.bytes() == fileSize)
+                        checksumMatches = checkTrailer(in, digest);
                 } finally {
-                    scheduler.shutdownNow();
-                    double totalElapsedSeconds = Math.max((System.nanoTime() - startTime), 1) / 1_000_000_000.0;
-                    System.out.printf("Клиент %d, загружено %d байт за %f секунд, средняя скорость: %f %n",
-                            id, totalBytesRead, totalElapsedSeconds, totalBytesRead / totalElapsedSeconds);
+                    long totalBytesRead = stats.bytes();
+                    stats.finish(totalBytesRead == fileSize && checksumMatches);
+                    stats.printSummary();
 
-                    if (totalBytesRead == fileSize) {
-                        out.writeByte(1);
-                        System.out.println("Файл " + receivedFilename + " успешно принят от " + clientSocket.getRemoteSocketAddress());
+                    if (totalBytesRead != fileSize) {
+                        out.writeByte(STATUS_FAILED);
+                        System.out.println("Ошибка: ожидаемый размер " + fileSize + ", получено " + stats.bytes());
+                    } else if (!checksumMatches) {
+                        out.writeByte(STATUS_CHECKSUM_MISMATCH);
+                        Files.deleteIfExists(targetPath);
+                        System.out.println("Ошибка: контрольная сумма " + receivedFilename + " не совпала, файл удалён");
                     } else {
-                        out.writeByte(0);
-                        System.out.println("Ошибка: ожидаемый размер " + fileSize + ", получено " + currentBytes.get());
+                        out.writeByte(STATUS_OK);
+                        System.out.println("Файл " + receivedFilename + " успешно принят от " + clientSocket.getRemoteSocketAddress());
                     }
                 }
             } catch (IOException e) {
                 System.out.println("Ошибка при обработке клиента " + clientSocket.getRemoteSocketAddress() + ": " + e.getMessage());
+                stats.finish(false);
                 try {
                     if (out != null)
                         out.writeByte(0);
@@ -159,6 +778,10 @@ public class Server {
                     ;
                 }
             } finally {
+                ServerMetrics.get().connectionClosed();
+                if (flow != null)
+                    flow.close();
+                scheduler.release(admitted);
                 try {
                     if (in != null) in.close();
                     if (out != null) out.close();
@@ -171,14 +794,94 @@ public class Server {
     }
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Использование: java Server {порт}");
+        if (args.length < 1) {
+            System.out.println("Использование: java Server {порт} [--nio [потоков] | --virtual] [--zero-copy] [--metrics-port порт] [--quiet] [--dedup-lazy]"
+                    + " [--max-rate байт/с] [--client-rate байт/с] [--max-active N] [--accept-queue N] [--weight адрес=вес]"
+                    + " [--buffer-size байт] [--buffer-pool-cap байт] [--fsync never|end|МБ] [--preallocate]");
             return;
         }
         int port = Integer.parseInt(args[0]);
-        Server server = new Server(port);
+        boolean nio = false;
+        int loops = Runtime.getRuntime().availableProcessors();
+        boolean zeroCopy = false;
+        boolean virtualThreads = false;
+        int metricsPort = -1;
+        boolean dedupLazy = false;
+        BandwidthScheduler scheduler = BandwidthScheduler.get();
+        for (int i = 1; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--nio" -> {
+                    nio = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        loops = Integer.parseInt(args[++i]);
+                }
+                case "--zero-copy" -> zeroCopy = true;
+                case "--virtual" -> virtualThreads = true;
+                case "--metrics-port" -> metricsPort = Integer.parseInt(args[++i]);
+                case "--quiet" -> StatisticsTicker.setEnabled(false);
+                case "--dedup-lazy" -> dedupLazy = true;
+                case "--max-rate" -> scheduler.setGlobalRate(Long.parseLong(args[++i]));
+                case "--client-rate" -> scheduler.setClientRate(Long.parseLong(args[++i]));
+                case "--max-active" -> scheduler.setMaxActiveTransfers(Integer.parseInt(args[++i]));
+                case "--accept-queue" -> scheduler.setAcceptQueue(Integer.parseInt(args[++i]));
+                case "--buffer-size" -> {
+                    int size = Integer.parseInt(args[++i]);
+                    if (size < 1 || size > BufferPool.MAX_BUFFER_SIZE) {
+                        System.out.println("Размер буфера должен быть от 1 до " + BufferPool.MAX_BUFFER_SIZE + " байт");
+                        return;
+                    }
+                    BufferPool.setBufferSize(size);
+                }
+                case "--preallocate" -> UploadFile.setZeroFill(true);
+                case "--buffer-pool-cap" -> BufferPool.setCap(Long.parseLong(args[++i]));
+                case "--fsync" -> {
+                    String policy = args[++i];
+                    long megabytes = policy.matches("\\d{1,7}") ? Long.parseLong(policy) : 0;
+                    if (!policy.equals("never") && !policy.equals("end") && (megabytes < 1 || megabytes > MAX_FSYNC_INTERVAL_MB)) {
+                        System.out.println("Политика fsync: never, end или интервал от 1 до " + MAX_FSYNC_INTERVAL_MB + " МБ");
+                        return;
+                    }
+                    UploadFile.setSyncInterval(switch (policy) {
+                        case "never" -> UploadFile.SYNC_NEVER;
+                        case "end" -> UploadFile.SYNC_AT_END;
+                        default -> megabytes << 20;
+                    });
+                }
+                case "--weight" -> {
+                    String[] weight = args[++i].split("=", 2);
+                    int value = weight.length == 2 && weight[1].matches("\\d{1,9}") ? Integer.parseInt(weight[1]) : 0;
+                    if (weight[0].isEmpty() || value < 1) {
+                        System.out.println("Вес задаётся как адрес=N, N от 1: " + args[i]);
+                        return;
+                    }
+                    scheduler.setClientWeight(weight[0], value);
+                }
+                default -> {
+                    System.out.println("Неизвестный параметр: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        if (nio && (zeroCopy || virtualThreads || dedupLazy)) {
+            System.out.println("--nio не сочетается с --zero-copy, --virtual и --dedup-lazy");
+            return;
+        }
+
         try {
-            server.start();
+            ServerMetrics.get().registerMBean();
+            scheduler.registerMBean();
+            if (metricsPort >= 0)
+                new MetricsHttpEndpoint(metricsPort).start();
+            if (nio) {
+                new NioServer(port, loops).start();
+            } else {
+                Server server = new Server(port);
+                server.setZeroCopy(zeroCopy);
+                server.setVirtualThreads(virtualThreads);
+                server.setDedupLazy(dedupLazy);
+                server.start();
+            }
         } catch (IOException e) {
             System.out.println(e.getMessage());
         }
@@ -0,0 +1,156 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// общие метрики сервера: счётчики на LongAdder, гистограммы скорости и длительности загрузок;
+// экспортируются через JMX и MetricsHttpEndpoint, консольная печать - в StatisticsTicker
+class ServerMetrics implements ServerMetricsMBean {
+    private static final ServerMetrics INSTANCE = new ServerMetrics();
+
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder logicalBytesReceived = new LongAdder();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+    private final LongAdder rejectedHeaders = new LongAdder();
+    // диапазоны многопоточной загрузки за границами файла или с перекрытием
+    private final LongAdder rejectedRanges = new LongAdder();
+    private final LongAdder completedUploads = new LongAdder();
+    private final LongAdder failedUploads = new LongAdder();
+    // байт в секунду по завершённым загрузкам
+    private final Histogram throughput = new Histogram();
+    // микросекунды
+    private final Histogram uploadDuration = new Histogram();
+
+    private ServerMetrics() {
+    }
+
+    static ServerMetrics get() {
+        return INSTANCE;
+    }
+
+    void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("lab2:type=ServerMetrics"));
+        } catch (JMException e) {
+            System.out.println("Не удалось зарегистрировать MBean: " + e.getMessage());
+        }
+    }
+
+    void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    void transferStarted() {
+        activeTransfers.incrementAndGet();
+    }
+
+    void bytesReceived(long wireBytes, long logicalBytes) {
+        bytesReceived.add(wireBytes);
+        logicalBytesReceived.add(logicalBytes);
+    }
+
+    void headerRejected() {
+        rejectedHeaders.increment();
+    }
+
+    void rangeRejected() {
+        rejectedRanges.increment();
+    }
+
+    void transferFinished(boolean success, long bytes, long elapsedNanos) {
+        activeTransfers.decrementAndGet();
+        if (!success) {
+            failedUploads.increment();
+            return;
+        }
+        completedUploads.increment();
+        uploadDuration.record(elapsedNanos / 1_000);
+        throughput.record((long) (bytes / (Math.max(elapsedNanos, 1) / 1_000_000_000.0)));
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getLogicalBytesReceived() {
+        return logicalBytesReceived.sum();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public int getActiveTransfers() {
+        return activeTransfers.get();
+    }
+
+    @Override
+    public long getRejectedHeaders() {
+        return rejectedHeaders.sum();
+    }
+
+    @Override
+    public long getRejectedRanges() {
+        return rejectedRanges.sum();
+    }
+
+    @Override
+    public long getCompletedUploads() {
+        return completedUploads.sum();
+    }
+
+    @Override
+    public long getFailedUploads() {
+        return failedUploads.sum();
+    }
+
+    @Override
+    public long getThroughputP50() {
+        return throughput.percentile(0.5);
+    }
+
+    @Override
+    public long getThroughputP99() {
+        return throughput.percentile(0.99);
+    }
+
+    @Override
+    public long getUploadDurationP50Millis() {
+        return uploadDuration.percentile(0.5) / 1_000;
+    }
+
+    @Override
+    public long getUploadDurationP99Millis() {
+        return uploadDuration.percentile(0.99) / 1_000;
+    }
+
+    // текстовый формат в духе Prometheus
+    String render() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("lab2_bytes_received_total ").append(getBytesReceived()).append('\n');
+        sb.append("lab2_logical_bytes_received_total ").append(getLogicalBytesReceived()).append('\n');
+        sb.append("lab2_active_connections ").append(getActiveConnections()).append('\n');
+        sb.append("lab2_active_transfers ").append(getActiveTransfers()).append('\n');
+        sb.append("lab2_rejected_headers_total ").append(getRejectedHeaders()).append('\n');
+        sb.append("lab2_rejected_ranges_total ").append(getRejectedRanges()).append('\n');
+        sb.append("lab2_uploads_total{result=\"ok\"} ").append(getCompletedUploads()).append('\n');
+        sb.append("lab2_uploads_total{result=\"failed\"} ").append(getFailedUploads()).append('\n');
+        sb.append("lab2_upload_throughput_bytes_per_second{quantile=\"0.5\"} ").append(getThroughputP50()).append('\n');
+        sb.append("lab2_upload_throughput_bytes_per_second{quantile=\"0.99\"} ").append(getThroughputP99()).append('\n');
+        sb.append("lab2_upload_duration_seconds{quantile=\"0.5\"} ").append(uploadDuration.percentile(0.5) / 1e6).append('\n');
+        sb.append("lab2_upload_duration_seconds{quantile=\"0.99\"} ").append(uploadDuration.percentile(0.99) / 1e6).append('\n');
+        sb.append("lab2_upload_duration_seconds_count ").append(uploadDuration.count()).append('\n');
+        sb.append("lab2_upload_duration_seconds_sum ").append(uploadDuration.sum() / 1e6).append('\n');
+        return sb.toString();
+    }
+}
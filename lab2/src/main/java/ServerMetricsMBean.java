@@ -0,0 +1,26 @@
+// атрибуты ServerMetrics, видимые через JMX (jconsole, VisualVM)
+public interface ServerMetricsMBean {
+    long getBytesReceived();
+
+    long getLogicalBytesReceived();
+
+    int getActiveConnections();
+
+    int getActiveTransfers();
+
+    long getRejectedHeaders();
+
+    long getRejectedRanges();
+
+    long getCompletedUploads();
+
+    long getFailedUploads();
+
+    long getThroughputP50();
+
+    long getThroughputP99();
+
+    long getUploadDurationP50Millis();
+
+    long getUploadDurationP99Millis();
+}
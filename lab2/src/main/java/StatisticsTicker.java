@@ -0,0 +1,58 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// необязательный консольный вывод поверх метрик: один планировщик на весь сервер,
+// не чаще раза в PERIOD и не больше MAX_LINES строк по отдельным клиентам за раз
+final class StatisticsTicker {
+    static final int PERIOD = 3;
+    private static final int MAX_LINES = 20;
+
+    private static final Set<TransferStats> active = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statistics-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile boolean enabled = true;
+
+    static {
+        scheduler.scheduleAtFixedRate(StatisticsTicker::tick, PERIOD, PERIOD, TimeUnit.SECONDS);
+    }
+
+    private StatisticsTicker() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        StatisticsTicker.enabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void register(TransferStats stats) {
+        active.add(stats);
+    }
+
+    static void unregister(TransferStats stats) {
+        active.remove(stats);
+    }
+
+    private static void tick() {
+        if (!enabled || active.isEmpty())
+            return;
+        int printed = 0;
+        for (TransferStats stats : active) {
+            if (printed++ == MAX_LINES)
+                break;
+            stats.printStatistics();
+        }
+        ServerMetrics metrics = ServerMetrics.get();
+        if (active.size() > MAX_LINES)
+            System.out.printf("... и ещё %d передач, всего получено байт: %d %n", active.size() - MAX_LINES, metrics.getBytesReceived());
+    }
+}
@@ -0,0 +1,69 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+// контрольная сумма тела, считается в том же проходе, что и чтение/запись;
+// CRC32C по умолчанию (аппаратный в JDK), либо любой MessageDigest по имени
+abstract class TransferDigest {
+    static final String DEFAULT_ALGORITHM = "CRC32C";
+
+    // null - алгоритм не поддерживается
+    static TransferDigest create(String algorithm) {
+        if (DEFAULT_ALGORITHM.equalsIgnoreCase(algorithm))
+            return new Crc32c();
+        try {
+            return new Digest(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    abstract void update(byte[] buffer, int offset, int length);
+
+    abstract void update(ByteBuffer buffer);
+
+    abstract byte[] finish();
+
+    private static class Crc32c extends TransferDigest {
+        private final CRC32C crc = new CRC32C();
+
+        @Override
+        void update(byte[] buffer, int offset, int length) {
+            crc.update(buffer, offset, length);
+        }
+
+        @Override
+        void update(ByteBuffer buffer) {
+            crc.update(buffer);
+        }
+
+        @Override
+        byte[] finish() {
+            return ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array();
+        }
+    }
+
+    private static class Digest extends TransferDigest {
+        private final MessageDigest md;
+
+        Digest(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        void update(byte[] buffer, int offset, int length) {
+            md.update(buffer, offset, length);
+        }
+
+        @Override
+        void update(ByteBuffer buffer) {
+            md.update(buffer);
+        }
+
+        @Override
+        byte[] finish() {
+            return md.digest();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// счётчики одной передачи; агрегаты - в ServerMetrics, консольная печать - в StatisticsTicker
+class TransferStats {
+    private final int id;
+    private final LongAdder currentBytes = new LongAdder();
+    // байт после распаковки; совпадает с currentBytes, если тело шло без сжатия
+    private final LongAdder logicalBytes = new LongAdder();
+
+    private volatile long startTime = 0;
+    private boolean finished = false;
+    // трогаются только потоком StatisticsTicker
+    private long prevBytes = 0;
+    private long prevTime = 0;
+
+    TransferStats(int id) {
+        this.id = id;
+    }
+
+    int id() {
+        return id;
+    }
+
+    void start() {
+        startTime = System.nanoTime();
+        prevTime = startTime;
+        ServerMetrics.get().transferStarted();
+        StatisticsTicker.register(this);
+    }
+
+    void stop() {
+        StatisticsTicker.unregister(this);
+    }
+
+    // итог передачи в гистограммы; повторные вызовы и вызов до start() игнорируются
+    synchronized void finish(boolean success) {
+        stop();
+        if (startTime == 0 || finished)
+            return;
+        finished = true;
+        ServerMetrics.get().transferFinished(success, bytes(), System.nanoTime() - startTime);
+    }
+
+    void add(long bytes) {
+        add(bytes, bytes);
+    }
+
+    void add(long wireBytes, long logical) {
+        currentBytes.add(wireBytes);
+        logicalBytes.add(logical);
+        ServerMetrics.get().bytesReceived(wireBytes, logical);
+    }
+
+    long bytes() {
+        return currentBytes.sum();
+    }
+
+    double elapsedSeconds() {
+        return Math.max((System.nanoTime() - startTime), 1) / 1_000_000_000.0;
+    }
+
+    void printStatistics() { // bytes per second
+        long now = System.nanoTime();
+        long currBytes = bytes();
+        double instantSpeed = (currBytes - prevBytes) / (Math.max(now - prevTime, 1) / 1_000_000_000.0);
+        prevBytes = currBytes;
+        prevTime = now;
+        double avgSpeed = currBytes / elapsedSeconds();
+        long logical = logicalBytes.sum();
+        if (logical == currBytes)
+            System.out.printf("Клиент: %d, мгновенная скорость: %f, средняя за сеанс: %f, байт получено: %d %n", id, instantSpeed, avgSpeed, currBytes);
+        else
+            System.out.printf("Клиент: %d, мгновенная скорость: %f, средняя за сеанс: %f, байт получено: %d, после распаковки: %d (x%.2f) %n",
+                    id, instantSpeed, avgSpeed, currBytes, logical, logical / (double) Math.max(currBytes, 1));
+    }
+
+    void printSummary() {
+        if (!StatisticsTicker.isEnabled())
+            return;
+        long totalBytesRead = bytes();
+        double totalElapsedSeconds = elapsedSeconds();
+        System.out.printf("Клиент %d, загружено %d байт за %f секунд, средняя скорость: %f %n",
+                id, totalBytesRead, totalElapsedSeconds, totalBytesRead / totalElapsedSeconds);
+        long logical = logicalBytes.sum();
+        if (logical != totalBytesRead)
+            System.out.printf("Клиент %d, после распаковки %d байт, эффективная скорость: %f %n",
+                    id, logical, logical / totalElapsedSeconds);
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// файл назначения загрузки: размер выставляется заранее, запись позиционная,
+// сброс на диск по политике SYNC_NEVER / SYNC_AT_END / каждые syncInterval байт
+class UploadFile implements AutoCloseable {
+    static final long SYNC_NEVER = -1;
+    static final long SYNC_AT_END = 0;
+    private static final int ZERO_FILL_BLOCK = 1 << 20;
+
+    private static volatile long syncInterval = SYNC_NEVER;
+    private static volatile boolean zeroFill = false;
+
+    private final FileChannel channel;
+    private final long size;
+    private long written = 0;
+    private long unsynced = 0;
+
+    private UploadFile(FileChannel channel, long size) {
+        this.channel = channel;
+        this.size = size;
+    }
+
+    static void setSyncInterval(long bytes) {
+        syncInterval = bytes;
+    }
+
+    // настоящее выделение места заранее: файл заполняется нулями (запись на диск удваивается)
+    static void setZeroFill(boolean zeroFill) {
+        UploadFile.zeroFill = zeroFill;
+    }
+
+    static UploadFile create(Path targetPath, long size) throws IOException {
+        FileChannel channel = FileChannel.open(targetPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            preallocate(channel, size);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new UploadFile(channel, size);
+    }
+
+    // в Java нет fallocate. по умолчанию запись последнего байта только выставляет длину: файл
+    // разреженный, место не резервируется и нехватка диска обнаружится посреди приёма.
+    // с zeroFill файл заполняется нулями крупными блоками - место занято до приёма тела
+    static void preallocate(FileChannel channel, long size) throws IOException {
+        long position = channel.size();
+        if (size <= 0 || position >= size)
+            return;
+        if (!zeroFill) {
+            channel.write(ByteBuffer.allocate(1), size - 1);
+            return;
+        }
+        ByteBuffer zeros = ByteBuffer.allocateDirect((int) Math.min(ZERO_FILL_BLOCK, size - position));
+        while (position < size) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), size - position));
+            while (zeros.hasRemaining())
+                position += channel.write(zeros, position);
+        }
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    // buffer от position до limit целиком
+    void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.write(buffer, written);
+            written += n;
+            unsynced += n;
+        }
+        maybeSync();
+    }
+
+    // учёт байт, записанных мимо write (transferFrom)
+    void advance(long bytes) throws IOException {
+        written += bytes;
+        unsynced += bytes;
+        maybeSync();
+    }
+
+    long written() {
+        return written;
+    }
+
+    private void maybeSync() throws IOException {
+        long interval = syncInterval;
+        if (interval > 0 && unsynced >= interval) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    // недописанный файл обрезается до принятого, чтобы не оставался хвост нулей
+    @Override
+    public void close() throws IOException {
+        try {
+            if (written < size)
+                channel.truncate(written);
+            else if (syncInterval != SYNC_NEVER && unsynced > 0)
+                channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// журнал докачки: сколько байт загрузки уже надёжно записано на диск;
+// хранится рядом с uploads, по файлу на id загрузки, перезаписывается атомарно
+class UploadJournal {
+    static final String JOURNAL_DIR = "uploads-journal";
+
+    // загрузки, которые сейчас принимаются, чтобы два соединения не писали в один файл
+    private static final Set<Long> active = ConcurrentHashMap.newKeySet();
+
+    private final long uploadId;
+    private final String receivedFilename;
+    private final Path targetPath;
+    private final long fileSize;
+    private long committed;
+
+    UploadJournal(long uploadId, String receivedFilename, Path targetPath, long fileSize, long committed) {
+        this.uploadId = uploadId;
+        this.receivedFilename = receivedFilename;
+        this.targetPath = targetPath;
+        this.fileSize = fileSize;
+        this.committed = committed;
+    }
+
+    static boolean acquire(long uploadId) {
+        return active.add(uploadId);
+    }
+
+    static void release(long uploadId) {
+        active.remove(uploadId);
+    }
+
+    private static Path journalPath(long uploadId) {
+        return Paths.get(JOURNAL_DIR, String.format("%016x.journal", uploadId));
+    }
+
+    // null - журнала нет или он повреждён
+    static UploadJournal load(long uploadId) {
+        Path path = journalPath(uploadId);
+        if (!Files.exists(path))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            String receivedFilename = in.readUTF();
+            Path targetPath = Paths.get(in.readUTF());
+            long fileSize = in.readLong();
+            long committed = in.readLong();
+            return new UploadJournal(uploadId, receivedFilename, targetPath, fileSize, committed);
+        } catch (IOException e) {
+            System.out.println("Повреждён журнал загрузки " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    String receivedFilename() {
+        return receivedFilename;
+    }
+
+    Path targetPath() {
+        return targetPath;
+    }
+
+    long fileSize() {
+        return fileSize;
+    }
+
+    long committed() {
+        return committed;
+    }
+
+    // вызывать только после force() файла данных, иначе журнал может опередить диск
+    void commit(long committed) throws IOException {
+        this.committed = committed;
+        Path path = journalPath(uploadId);
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeUTF(receivedFilename);
+            out.writeUTF(targetPath.toString());
+            out.writeLong(fileSize);
+            out.writeLong(committed);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(journalPath(uploadId));
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentChunkerTest {
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static List<ContentChunker.Chunk> split(byte[] data) throws IOException {
+        return ContentChunker.split(new ByteArrayInputStream(data));
+    }
+
+    // поток, отдающий данные кусками неудобной длины, как сокет или канал
+    private static InputStream dribbling(byte[] data, int maxRead) {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, maxRead));
+            }
+        };
+    }
+
+    @Test
+    void emptyStreamHasNoChunks() throws IOException {
+        assertTrue(split(new byte[0]).isEmpty());
+    }
+
+    @Test
+    void chunksAreContiguousBoundedAndHashed() throws Exception {
+        byte[] data = randomBytes(1 << 20, 1);
+        List<ContentChunker.Chunk> chunks = split(data);
+
+        long offset = 0;
+        for (int i = 0; i < chunks.size(); ++i) {
+            ContentChunker.Chunk chunk = chunks.get(i);
+            assertEquals(offset, chunk.offset());
+            assertTrue(chunk.length() <= ContentChunker.MAX_CHUNK);
+            if (i < chunks.size() - 1)
+                assertTrue(chunk.length() >= ContentChunker.MIN_CHUNK);
+            byte[] expected = MessageDigest.getInstance("SHA-256")
+                    .digest(Arrays.copyOfRange(data, (int) offset, (int) offset + chunk.length()));
+            assertArrayEquals(expected, chunk.hash());
+            assertEquals(ContentChunker.HASH_SIZE, chunk.hash().length);
+            offset += chunk.length();
+        }
+        assertEquals(data.length, offset);
+    }
+
+    // без границ по содержимому чанк обрывается на максимуме
+    @Test
+    void constantDataIsCutAtMaxChunk() throws IOException {
+        byte[] data = new byte[3 * ContentChunker.MAX_CHUNK + 5];
+        List<ContentChunker.Chunk> chunks = split(data);
+
+        for (ContentChunker.Chunk chunk : chunks)
+            assertTrue(chunk.length() <= ContentChunker.MAX_CHUNK);
+        assertEquals(data.length, chunks.stream().mapToLong(ContentChunker.Chunk::length).sum());
+    }
+
+    // границы не должны зависеть от того, как поток нарезан на чтения, в том числе через границу буфера
+    @Test
+    void boundariesDoNotDependOnReadSizes() throws IOException {
+        byte[] data = randomBytes(300_000, 2);
+        List<ContentChunker.Chunk> whole = split(data);
+
+        for (int maxRead : new int[] { 1, 7, 4093, 65537 }) {
+            List<ContentChunker.Chunk> pieces = ContentChunker.split(dribbling(data, maxRead));
+            assertEquals(whole.size(), pieces.size());
+            for (int i = 0; i < whole.size(); ++i) {
+                assertEquals(whole.get(i).offset(), pieces.get(i).offset());
+                assertEquals(whole.get(i).length(), pieces.get(i).length());
+                assertArrayEquals(whole.get(i).hash(), pieces.get(i).hash());
+            }
+        }
+    }
+
+    // вставка в начало меняет лишь первые чанки, остальные дедуплицируются
+    @Test
+    void prefixInsertionKeepsMostChunks() throws IOException {
+        byte[] data = randomBytes(1 << 20, 3);
+        byte[] shifted = new byte[data.length + 100];
+        System.arraycopy(randomBytes(100, 4), 0, shifted, 0, 100);
+        System.arraycopy(data, 0, shifted, 100, data.length);
+
+        Set<String> original = new HashSet<>();
+        for (ContentChunker.Chunk chunk : split(data))
+            original.add(Arrays.toString(chunk.hash()));
+        List<ContentChunker.Chunk> chunks = split(shifted);
+        long changed = chunks.stream().filter(chunk -> !original.contains(Arrays.toString(chunk.hash()))).count();
+
+        assertTrue(changed <= 2, "changed chunks: " + changed);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameCodecTest {
+    private static final byte[] CODECS = { FrameCodec.DEFLATE, FrameCodec.LZ };
+
+    private static byte[] text(int size) {
+        byte[] line = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, 0123456789\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i)
+            data[i] = line[i % line.length];
+        return data;
+    }
+
+    // длинные литералы вперемешку с длинными и перекрывающимися совпадениями
+    private static byte[] mixed(int size) {
+        Random random = new Random(5);
+        byte[] data = new byte[size];
+        int i = 0;
+        while (i < size) {
+            int run = Math.min(size - i, 1 + random.nextInt(1000));
+            if (random.nextBoolean()) {
+                for (int j = 0; j < run; ++j)
+                    data[i + j] = (byte) random.nextInt();
+            } else {
+                Arrays.fill(data, i, i + run, (byte) random.nextInt());
+            }
+            i += run;
+        }
+        return data;
+    }
+
+    private static byte[] roundTrip(FrameCodec codec, byte[] data) throws IOException {
+        byte[] compressed = new byte[data.length];
+        int compressedLength = codec.compress(data, data.length, compressed);
+        assertTrue(compressedLength > 0 && compressedLength < data.length, "compressed: " + compressedLength);
+        byte[] restored = new byte[data.length];
+        codec.decompress(compressed, compressedLength, restored, data.length);
+        return restored;
+    }
+
+    @Test
+    void compressibleFramesRoundTrip() throws IOException {
+        for (byte id : CODECS) {
+            FrameCodec codec = FrameCodec.create(id);
+            for (byte[] data : new byte[][] { text(100), text(64 * 1024), mixed(64 * 1024), new byte[70_000] })
+                assertArrayEquals(data, roundTrip(codec, data), FrameCodec.name(id));
+        }
+    }
+
+    // кодек живёт всё соединение: состояние прошлого кадра не должно влиять на следующий
+    @Test
+    void codecIsReusableAcrossFrames() throws IOException {
+        for (byte id : CODECS) {
+            FrameCodec codec = FrameCodec.create(id);
+            byte[] first = mixed(10_000);
+            byte[] second = text(5_000);
+            assertArrayEquals(first, roundTrip(codec, first));
+            assertArrayEquals(second, roundTrip(codec, second));
+        }
+    }
+
+    @Test
+    void incompressibleFrameIsSentRaw() {
+        byte[] data = new byte[64 * 1024];
+        new Random(6).nextBytes(data);
+        for (byte id : CODECS)
+            assertEquals(-1, FrameCodec.create(id).compress(data, data.length, new byte[data.length]), FrameCodec.name(id));
+    }
+
+    @Test
+    void tinyFrameIsSentRaw() {
+        for (byte id : CODECS)
+            assertEquals(-1, FrameCodec.create(id).compress(new byte[] { 1, 2 }, 2, new byte[2]), FrameCodec.name(id));
+    }
+
+    @Test
+    void corruptFrameFailsWithIOException() {
+        byte[] data = text(10_000);
+        for (byte id : CODECS) {
+            FrameCodec codec = FrameCodec.create(id);
+            byte[] compressed = new byte[data.length];
+            int compressedLength = codec.compress(data, data.length, compressed);
+            byte[] restored = new byte[data.length];
+            // кадр обрезан или заявленный размер не сходится
+            assertThrows(IOException.class, () -> codec.decompress(compressed, compressedLength / 2, restored, data.length));
+            assertThrows(IOException.class, () -> codec.decompress(compressed, compressedLength, restored, data.length - 1));
+        }
+    }
+
+    @Test
+    void garbageLzFrameFailsWithIOException() {
+        FrameCodec codec = FrameCodec.create(FrameCodec.LZ);
+        byte[] garbage = { (byte) 0x0F, 1, (byte) 0xFF, (byte) 0xFF };
+        assertThrows(IOException.class, () -> codec.decompress(garbage, garbage.length, new byte[100], 100));
+    }
+
+    @Test
+    void namesMapToIds() {
+        for (byte id : new byte[] { FrameCodec.NONE, FrameCodec.DEFLATE, FrameCodec.LZ })
+            assertEquals(id, FrameCodec.byName(FrameCodec.name(id)));
+        assertNull(FrameCodec.byName("zstd"));
+        assertNull(FrameCodec.create(FrameCodec.NONE));
+        assertNull(FrameCodec.create((byte) 42));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferDigestTest {
+    private static final byte[] DATA = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void defaultAlgorithmIsBigEndianCrc32c() {
+        TransferDigest digest = TransferDigest.create(TransferDigest.DEFAULT_ALGORITHM);
+        digest.update(DATA, 0, DATA.length);
+
+        CRC32C crc = new CRC32C();
+        crc.update(DATA);
+        assertArrayEquals(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array(), digest.finish());
+    }
+
+    @Test
+    void algorithmNameIsCaseInsensitiveForCrc32c() {
+        assertNotNull(TransferDigest.create("crc32c"));
+    }
+
+    @Test
+    void messageDigestMatchesJdk() throws Exception {
+        TransferDigest digest = TransferDigest.create("SHA-256");
+        digest.update(DATA, 0, DATA.length);
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(DATA), digest.finish());
+    }
+
+    @Test
+    void unknownAlgorithmIsNull() {
+        assertNull(TransferDigest.create("no-such-digest"));
+    }
+
+    // сервер считает по кускам из сокета, клиент - по ByteBuffer из канала: суммы должны совпасть
+    @Test
+    void splitAndBufferUpdatesMatchWholeArray() {
+        for (String algorithm : new String[] { "CRC32C", "SHA-256", "MD5" }) {
+            TransferDigest whole = TransferDigest.create(algorithm);
+            whole.update(DATA, 0, DATA.length);
+
+            TransferDigest pieces = TransferDigest.create(algorithm);
+            pieces.update(DATA, 0, 7);
+            pieces.update(ByteBuffer.wrap(DATA, 7, 20));
+            ByteBuffer direct = ByteBuffer.allocateDirect(DATA.length - 27);
+            direct.put(DATA, 27, DATA.length - 27).flip();
+            pieces.update(direct);
+
+            assertArrayEquals(whole.finish(), pieces.finish(), algorithm);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadJournalTest {
+    private final long uploadId = ThreadLocalRandom.current().nextLong();
+
+    private static Path journalPath(long uploadId) {
+        return Paths.get(UploadJournal.JOURNAL_DIR, String.format("%016x.journal", uploadId));
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(journalPath(uploadId));
+        UploadJournal.release(uploadId);
+    }
+
+    @Test
+    void missingJournalLoadsAsNull() {
+        assertNull(UploadJournal.load(uploadId));
+    }
+
+    // после перезапуска сервера журнал читается новым объектом
+    @Test
+    void committedOffsetSurvivesReload() throws IOException {
+        Path target = Paths.get("uploads", "dir", "file.bin").toAbsolutePath();
+        new UploadJournal(uploadId, "dir/file.bin", target, 1 << 20, 0).commit(4096);
+
+        UploadJournal loaded = UploadJournal.load(uploadId);
+        assertNotNull(loaded);
+        assertEquals("dir/file.bin", loaded.receivedFilename());
+        assertEquals(target, loaded.targetPath());
+        assertEquals(1 << 20, loaded.fileSize());
+        assertEquals(4096, loaded.committed());
+    }
+
+    @Test
+    void laterCommitReplacesEarlierOneAtomically() throws IOException {
+        UploadJournal journal = new UploadJournal(uploadId, "a", Paths.get("a"), 100, 0);
+        journal.commit(10);
+        journal.commit(70);
+
+        assertEquals(70, UploadJournal.load(uploadId).committed());
+        assertEquals(70, journal.committed());
+        Path path = journalPath(uploadId);
+        assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".tmp")));
+    }
+
+    // оборванная запись журнала не должна давать докачку с мусорного смещения
+    @Test
+    void truncatedJournalLoadsAsNull() throws IOException {
+        new UploadJournal(uploadId, "a", Paths.get("a"), 100, 0).commit(50);
+        Path path = journalPath(uploadId);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertNull(UploadJournal.load(uploadId));
+    }
+
+    @Test
+    void deletedJournalIsGone() throws IOException {
+        UploadJournal journal = new UploadJournal(uploadId, "a", Paths.get("a"), 100, 0);
+        journal.commit(50);
+        journal.delete();
+
+        assertNull(UploadJournal.load(uploadId));
+    }
+
+    @Test
+    void uploadCanBeAcquiredOnlyOnceUntilReleased() {
+        assertTrue(UploadJournal.acquire(uploadId));
+        assertFalse(UploadJournal.acquire(uploadId));
+        UploadJournal.release(uploadId);
+        assertTrue(UploadJournal.acquire(uploadId));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+// задержка ответа заглушки: логнормальное распределение по медиане и p99 - длинный хвост,
+// как у настоящих API; "40/400" - медиана 40 мс, p99 400 мс, "0" - без задержки
+record LatencyModel(double medianMillis, double p99Millis) {
+    // квантиль 0.99 стандартного нормального распределения
+    private static final double Z_99 = 2.326;
+
+    static LatencyModel parse(String spec) {
+        int slash = spec.indexOf('/');
+        if (slash < 0) {
+            double fixed = Double.parseDouble(spec);
+            return new LatencyModel(fixed, fixed);
+        }
+        return new LatencyModel(Double.parseDouble(spec.substring(0, slash)), Double.parseDouble(spec.substring(slash + 1)));
+    }
+
+    long sampleMillis() {
+        if (medianMillis <= 0)
+            return 0;
+        double mu = Math.log(medianMillis);
+        double sigma = Math.max(Math.log(p99Millis) - mu, 0) / Z_99;
+        return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.0f/%.0f мс", medianMillis, p99Millis);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// нагрузочный прогон GeoInfoApp против локальных заглушек API: N поисков через startChain,
+// не больше C одновременно, по K разным названиям (повторы проверяют кэш и склейку запросов).
+// пример: --lookups 5000 --concurrency 500 --distinct 200 --latency 40/400 --error-rate 0.01
+public class LoadTest {
+    private static final long SAMPLE_PERIOD_MILLIS = 50;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int lookups = positiveInt(options, "lookups", 2000);
+        int concurrency = positiveInt(options, "concurrency", 200);
+        int distinct = positiveInt(options, "distinct", 100);
+        LatencyModel latency = LatencyModel.parse(options.getOrDefault("latency", "40/400"));
+        LatencyModel detailsLatency = LatencyModel.parse(options.getOrDefault("details-latency", latency.medianMillis() + "/" + latency.p99Millis()));
+        double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+        Duration timeout = Duration.ofMillis(Long.parseLong(options.getOrDefault("timeout", String.valueOf(GeoInfoApp.DEFAULT_DEADLINE.toMillis()))));
+        int engineThreads = Integer.parseInt(options.getOrDefault("engine-threads", "4"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "16"));
+        int maxQueued = Integer.parseInt(options.getOrDefault("max-queued", "1000"));
+        int cacheSize = Integer.parseInt(options.getOrDefault("cache-size", "10000"));
+        int descriptionSize = Integer.parseInt(options.getOrDefault("description-size", "3000"));
+
+        StubUpstreams.Behaviour behaviour = new StubUpstreams.Behaviour(latency, errorRate);
+        StubUpstreams stubs = new StubUpstreams(behaviour, behaviour, new StubUpstreams.Behaviour(detailsLatency, errorRate), descriptionSize);
+        stubs.start();
+        HttpEngine http = new HttpEngine(engineThreads, maxInFlight, maxQueued);
+        ResponseCache cache = new ResponseCache(cacheSize, null);
+        ApiEndpoints endpoints = stubs.endpoints();
+
+        System.out.printf("Поисков: %d, одновременно: %d, разных мест: %d, задержка: %s, ошибок: %.1f%%, срок: %d мс%n",
+                lookups, concurrency, distinct, latency, errorRate * 100, timeout.toMillis());
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long gcCountBefore = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+        long gcTimeBefore = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+        threads.resetPeakThreadCount();
+        int threadsBefore = threads.getThreadCount();
+        AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+        ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, SAMPLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+
+        long[] latencies = new long[lookups];
+        LongAdder ok = new LongAdder();
+        LongAdder partial = new LongAdder();
+        Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(lookups);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; ++i) {
+            permits.acquire();
+            int index = i;
+            String name = "Stub City " + (i % distinct);
+            long lookupStart = System.nanoTime();
+            new GeoInfoApp(name, http, cache, endpoints).startChain(GeoInfoApp.BEST_MATCH, timeout)
+                    .whenComplete((summary, error) -> {
+                        latencies[index] = System.nanoTime() - lookupStart;
+                        if (error != null) {
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            failures.computeIfAbsent(cause.getClass().getSimpleName(), key -> new AtomicInteger()).incrementAndGet();
+                        } else if (summary.contains("did not respond in time") || summary.contains("unavailable")) {
+                            partial.increment();
+                        } else {
+                            ok.increment();
+                        }
+                        permits.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        monitor.shutdownNow();
+
+        long gcCount = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum() - gcCountBefore;
+        long gcTime = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() - gcTimeBefore;
+        Arrays.sort(latencies);
+        int failed = failures.values().stream().mapToInt(AtomicInteger::get).sum();
+
+        System.out.printf("Полных ответов: %d, частичных: %d, ошибок: %d %s%n", ok.sum(), partial.sum(), failed, failed > 0 ? failures : "");
+        System.out.printf("Задержка, мс: p50 %.1f, p95 %.1f, p99 %.1f, max %.1f%n",
+                millis(percentile(latencies, 50)), millis(percentile(latencies, 95)),
+                millis(percentile(latencies, 99)), millis(latencies[lookups - 1]));
+        System.out.printf("Время: %.2f с, пропускная способность: %.0f поисков/с%n",
+                elapsed / 1e9, lookups / (elapsed / 1e9));
+        System.out.printf("Потоки: до %d, пик %d; куча: пик %d МБ из %d МБ; GC: %d сборок, %d мс%n",
+                threadsBefore, threads.getPeakThreadCount(), peakHeap.get() >> 20,
+                memory.getHeapMemoryUsage().getMax() >> 20, gcCount, gcTime);
+        StringBuilder upstream = new StringBuilder("Запросов к заглушкам:");
+        for (Map.Entry<String, StubUpstreams.Counters> entry : stubs.counters().entrySet())
+            upstream.append(String.format(" %s %d (ошибок %d)", entry.getKey(),
+                    entry.getValue().requests.sum(), entry.getValue().errors.sum()));
+        System.out.println(upstream);
+        System.out.printf("Кэш: доля попаданий %.2f, склеено запросов %d; хеджировано %d, дубль первым %d%n",
+                cache.getHitRatio(), cache.getCoalesced(), http.hedged(), http.hedgeWins());
+
+        http.close();
+        stubs.stop();
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    // при 0 мерить нечего, отрицательные вешают семафор или ломают индексы
+    private static int positiveInt(Map<String, String> options, String name, int defaultValue) {
+        int value = Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+        if (value < 1)
+            throw new IllegalArgumentException("--" + name + " must be at least 1: " + value);
+        return value;
+    }
+
+    // --имя значение
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
\ No newline at end of file
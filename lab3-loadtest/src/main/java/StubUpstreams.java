@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// локальные заглушки GraphHopper, OpenWeather и OpenTripMap: те же пути и та же форма JSON
+// (с лишними полями, которые GeoInfoApp должен пролистывать), ответы детерминированы по запросу.
+// три отдельных сервера на своих портах, чтобы ограничения по upstream в HttpEngine работали как с настоящими.
+// задержка не занимает поток сервера: ответ отправляется из планировщика
+class StubUpstreams {
+    private static final int BACKLOG = 4096;
+    private static final int HANDLER_THREADS = 2;
+    private static final int PLACES_PER_AREA = 10;
+
+    record Behaviour(LatencyModel latency, double errorRate) {}
+
+    static class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final Behaviour geocode;
+    private final Behaviour weather;
+    private final Behaviour places;
+    private final int descriptionSize;
+    private final Map<String, Counters> counters = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "stub-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService handlers = Executors.newFixedThreadPool(HANDLER_THREADS * 3, runnable -> {
+        Thread thread = new Thread(runnable, "stub-handler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private HttpServer graphHopper;
+    private HttpServer openWeather;
+    private HttpServer openTripMap;
+
+    // descriptionSize - примерный размер текста описания места в символах
+    StubUpstreams(Behaviour geocode, Behaviour weather, Behaviour places, int descriptionSize) {
+        this.geocode = geocode;
+        this.weather = weather;
+        this.places = places;
+        this.descriptionSize = descriptionSize;
+        for (String name : new String[] { "geocode", "weather", "places", "details" })
+            counters.put(name, new Counters());
+    }
+
+    void start() throws IOException {
+        graphHopper = server();
+        graphHopper.createContext("/api/1/geocode", exchange -> handle(exchange, "geocode", geocode, StubUpstreams::geocodeResponse));
+        openWeather = server();
+        openWeather.createContext("/data/2.5/weather", exchange -> handle(exchange, "weather", weather, StubUpstreams::weatherResponse));
+        openTripMap = server();
+        openTripMap.createContext("/0.1/en/places/radius", exchange -> handle(exchange, "places", places, StubUpstreams::placesResponse));
+        openTripMap.createContext("/0.1/ru/places/xid/", exchange -> handle(exchange, "details", places, this::detailsResponse));
+        graphHopper.start();
+        openWeather.start();
+        openTripMap.start();
+    }
+
+    private HttpServer server() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), BACKLOG);
+        server.setExecutor(handlers);
+        return server;
+    }
+
+    ApiEndpoints endpoints() {
+        return new ApiEndpoints(base(graphHopper), base(openWeather), base(openTripMap));
+    }
+
+    private static String base(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    Map<String, Counters> counters() {
+        return counters;
+    }
+
+    void stop() {
+        graphHopper.stop(0);
+        openWeather.stop(0);
+        openTripMap.stop(0);
+        scheduler.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange, String name, Behaviour behaviour, Function<HttpExchange, String> response) {
+        Counters counter = counters.get(name);
+        counter.requests.increment();
+        boolean error = ThreadLocalRandom.current().nextDouble() < behaviour.errorRate();
+        String body;
+        if (error) {
+            counter.errors.increment();
+            body = "{\"message\":\"stub error\"}";
+        } else {
+            body = response.apply(exchange);
+        }
+        int status = error ? 500 : 200;
+        scheduler.schedule(() -> respond(exchange, status, body), behaviour.latency().sampleMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // клиент отменил запрос (дедлайн или хеджирование)
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null)
+            return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // точка места выводится из хеша названия, чтобы одинаковые запросы давали одинаковые координаты
+    private static String geocodeResponse(HttpExchange exchange) {
+        String q = query(exchange).getOrDefault("q", "");
+        // перемешивание: у похожих названий ("City 1", "City 2") точки не должны совпадать после округления
+        int hash = q.hashCode() * 0x9E3779B1;
+        hash ^= hash >>> 16;
+        double lat = (Math.floorMod(hash, 140_000) - 70_000) / 1000.0;
+        double lng = (Math.floorMod(hash >>> 8, 340_000) - 170_000) / 1000.0;
+        StringBuilder sb = new StringBuilder("{\"hits\":[");
+        for (int i = 0; i < 3; ++i) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(String.format(Locale.US,
+                    "{\"point\":{\"lat\":%.5f,\"lng\":%.5f},\"extent\":[%.5f,%.5f,%.5f,%.5f],\"name\":\"%s %d\","
+                            + "\"country\":\"Stubland\",\"countrycode\":\"SL\",\"city\":\"%s\",\"osm_id\":%d,"
+                            + "\"osm_type\":\"N\",\"osm_key\":\"place\",\"osm_value\":\"city\"}",
+                    lat + i * 0.1, lng + i * 0.1, lng - 0.2, lat - 0.2, lng + 0.2, lat + 0.2, q, i + 1, q, Math.abs(hash) + i));
+        }
+        return sb.append("],\"locale\":\"en\",\"took\":3}").toString();
+    }
+
+    private static String weatherResponse(HttpExchange exchange) {
+        Map<String, String> params = query(exchange);
+        return String.format(Locale.US,
+                "{\"coord\":{\"lon\":%s,\"lat\":%s},\"weather\":[{\"id\":803,\"main\":\"Clouds\",\"description\":\"broken clouds\",\"icon\":\"04d\"}],"
+                        + "\"base\":\"stations\",\"main\":{\"temp\":12.3,\"feels_like\":11.1,\"temp_min\":10.0,\"temp_max\":14.2,"
+                        + "\"pressure\":1013,\"humidity\":71,\"sea_level\":1013,\"grnd_level\":1001},\"visibility\":10000,"
+                        + "\"wind\":{\"speed\":4.6,\"deg\":250,\"gust\":7.1},\"clouds\":{\"all\":75},\"dt\":1700000000,"
+                        + "\"sys\":{\"country\":\"SL\",\"sunrise\":1699990000,\"sunset\":1700020000},\"timezone\":10800,\"id\":1,\"name\":\"Stub\",\"cod\":200}",
+                params.getOrDefault("lon", "0"), params.getOrDefault("lat", "0"));
+    }
+
+    // xid зависят от округлённой точки: соседние запросы видят те же места, разные города - разные
+    private static String placesResponse(HttpExchange exchange) {
+        Map<String, String> params = query(exchange);
+        String area = params.getOrDefault("lat", "0") + "," + params.getOrDefault("lon", "0");
+        int limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(PLACES_PER_AREA)));
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < Math.min(limit, PLACES_PER_AREA); ++i) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(String.format(Locale.US,
+                    "{\"xid\":\"N%08x%02d\",\"name\":\"Place %d\",\"dist\":%.1f,\"rate\":3,\"osm\":\"node/%d\","
+                            + "\"wikidata\":\"Q%d\",\"kinds\":\"historic,interesting_places\",\"point\":{\"lon\":0.1,\"lat\":0.2}}",
+                    area.hashCode(), i, i, 100.0 * i, i, i));
+        }
+        return sb.append(']').toString();
+    }
+
+    private String detailsResponse(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        String xid = path.substring(path.lastIndexOf('/') + 1);
+        String text = ("Описание места " + xid + ". ").repeat(Math.max(descriptionSize / 30, 1));
+        return "{\"xid\":\"" + xid + "\",\"name\":\"Место " + xid + "\","
+                + "\"address\":{\"city\":\"Stub\",\"road\":\"Main street\",\"house_number\":\"1\",\"country\":\"Stubland\"},"
+                + "\"rate\":\"3h\",\"osm\":\"node/1\",\"kinds\":\"historic,architecture,interesting_places\","
+                + "\"sources\":{\"geometry\":\"osm\",\"attributes\":[\"osm\",\"wikidata\"]},"
+                + "\"otm\":\"https://opentripmap.com/en/card/" + xid + "\",\"wikipedia\":\"https://ru.wikipedia.org/wiki/Stub\","
+                + "\"image\":\"https://commons.wikimedia.org/wiki/File:Stub.jpg\","
+                + "\"preview\":{\"source\":\"https://upload.wikimedia.org/stub.jpg\",\"height\":400,\"width\":300},"
+                + "\"wikipedia_extracts\":{\"title\":\"ru:Stub\",\"text\":\"" + text + "\",\"html\":\"<p>" + text + "</p>\"},"
+                + "\"point\":{\"lon\":0.1,\"lat\":0.2}}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+// базовые адреса внешних API; по умолчанию настоящие, для стендов и нагрузочных тестов подменяются
+// конструктором или -Dlab3.graphhopper.url, -Dlab3.openweather.url, -Dlab3.opentripmap.url
+public record ApiEndpoints(String graphHopper, String openWeather, String openTripMap) {
+    public static ApiEndpoints defaults() {
+        return new ApiEndpoints(
+                System.getProperty("lab3.graphhopper.url", "https://graphhopper.com"),
+                System.getProperty("lab3.openweather.url", "https://api.openweathermap.org"),
+                System.getProperty("lab3.opentripmap.url", "http://api.opentripmap.com"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// ограничение одновременных запросов к одному upstream: сверх maxInFlight запросы ждут в очереди,
+// сверх maxQueued сразу получают отказ; запрос, чей срок истёк в очереди, уже не отправляется.
+// отмена результата вызывающим отменяет и сам запрос
+public class Bulkhead {
+    private record Waiter(long deadline, BooleanSupplier start, CompletableFuture<?> result) {}
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private int inFlight = 0;
+    private final Queue<Waiter> queue = new ArrayDeque<>();
+
+    public Bulkhead(int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    // deadline - по System.nanoTime()
+    public <T> CompletableFuture<T> submit(long deadline, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        BooleanSupplier start = () -> start(call, result);
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                if (queue.size() >= maxQueued)
+                    return CompletableFuture.failedFuture(new RejectedExecutionException("Too many queued requests"));
+                queue.add(new Waiter(deadline, start, result));
+                return result;
+            }
+            ++inFlight;
+        }
+        if (start.getAsBoolean())
+            release();
+        return result;
+    }
+
+    // только при свободном слоте, без очереди; null - слота нет
+    public <T> CompletableFuture<T> trySubmit(Supplier<CompletableFuture<T>> call) {
+        synchronized (this) {
+            if (inFlight >= maxInFlight)
+                return null;
+            ++inFlight;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (start(call, result))
+            release();
+        return result;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    // true - вызов завершился, пока start ещё на стеке (например, сразу отказ в соединении): слот освобождает
+    // вызывающий, иначе череда таких отказов из очереди уходила бы в рекурсию release -> start -> release
+    private <T> boolean start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        CompletableFuture<T> running;
+        try {
+            running = call.get();
+        } catch (RuntimeException e) {
+            running = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> started = running;
+        // кто первым сбросит флаг - start после подписки или завершение, - тот слот и не освобождает
+        AtomicBoolean starting = new AtomicBoolean(true);
+        started.whenComplete((value, error) -> {
+            if (!starting.compareAndSet(true, false))
+                release();
+            if (error != null)
+                result.completeExceptionally(error);
+            else
+                result.complete(value);
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled())
+                started.cancel(true);
+        });
+        return !starting.compareAndSet(true, false);
+    }
+
+    // слот переходит следующему в очереди; отменённые и просроченные пропускаются,
+    // как и завершившиеся сразу - их слот берёт следующий на том же витке цикла
+    private void release() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    --inFlight;
+                    return;
+                }
+            }
+            if (next.result().isDone())
+                continue;
+            if (System.nanoTime() - next.deadline() < 0) {
+                if (next.start().getAsBoolean())
+                    continue;
+                return;
+            }
+            next.result().completeExceptionally(new HttpTimeoutException("Deadline exceeded while queued"));
+        }
+    }
+}
\ No newline at end of file
@@ -1,34 +1,107 @@
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class GeoInfoApp {
+    // номера вариантов с 1, как в консольном списке; первый - лучшее совпадение по мнению GraphHopper
+    public static final int BEST_MATCH = 1;
+    // на всю цепочку, от геокодирования до описаний мест
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(10);
+
     private final String locationName;
+    private final HttpEngine http;
+    private final ResponseCache cache;
+    private final ApiEndpoints api;
     private static final int MAX_PLACES_OF_INTEREST = 10;
+    // ~1 км для погоды, ~100 м для мест в радиусе 2 км
+    private static final int WEATHER_DECIMALS = 2;
+    private static final int PLACES_DECIMALS = 3;
+    // поля, которые реально читаются из ответов; остальное при разборе пролистывается
+    private static final String[] LOCATION_FIELDS = { "hits[].country", "hits[].name", "hits[].osm_key", "hits[].osm_value", "hits[].point" };
+    private static final String[] WEATHER_FIELDS = { "weather[].main", "main.temp", "main.feels_like", "main.pressure", "main.humidity", "wind.speed" };
+    private static final String[] PLACES_FIELDS = { "[].xid" };
+    private static final String[] PLACE_DESCRIPTION_FIELDS = { "name", "kinds", "wikipedia_extracts.text" };
 
     private static final String GRAPH_HOPPER_API_KEY = "";
     private static final String OPEN_WEATHER_API_KEY = "";
     private static final String OPEN_TRIP_MAP_API_KEY = "";
 
     public GeoInfoApp(String input) {
+        this(input, HttpEngine.shared(), ResponseCache.shared());
+    }
+
+    public GeoInfoApp(String input, HttpEngine http, ResponseCache cache) {
+        this(input, http, cache, ApiEndpoints.defaults());
+    }
+
+    public GeoInfoApp(String input, HttpEngine http, ResponseCache cache, ApiEndpoints api) {
         this.locationName = input.replace(" ", "_");
+        this.http = http;
+        this.cache = cache;
+        this.api = api;
     }
     
-    public CompletableFuture<String> startChain() {
-        return CompletableFuture.supplyAsync(this::getLocationPoint).thenCompose(this::getWeatherAndPlacesAsync);
+    public String locationName() {
+        return locationName;
+    }
+
+    // вариант выбирается пользователем с консоли. список печатается и выбор читается в вызывающем потоке,
+    // он же ждёт ответ геокодера; потоки HttpEngine консоль не ждут. дальше обычная цепочка
+    // (геокодирование в ней берётся из кэша), время выбора в срок не входит
+    public CompletableFuture<String> startChain(Scanner console) {
+        JSONArray hits;
+        int usersChoice;
+        try {
+            String data = fetch(ResponseCache.Endpoint.GEOCODE, locationName, constructLocationURL(locationName), LOCATION_FIELDS,
+                    HttpEngine.deadlineAfter(DEFAULT_DEADLINE), false).join();
+            hits = new JSONObject(data).getJSONArray("hits");
+            if (hits.isEmpty())
+                throw new NoSuchElementException("No results");
+            for (int i = 0; i < hits.length(); ++i) {
+                JSONObject hit = hits.getJSONObject(i);
+                System.out.printf("%d) %s - %s (%s, %s)%n", i + 1,
+                        hit.getString("country"),
+                        hit.getString("name"),
+                        hit.getString("osm_key"),
+                        hit.getString("osm_value"));
+            }
+            usersChoice = console.nextInt();
+            if (usersChoice < 1 || usersChoice > hits.length())
+                throw new NoSuchElementException("Out of bounds");
+        } catch (CompletionException e) {
+            return CompletableFuture.failedFuture(e.getCause() != null ? e.getCause() : e);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        JSONObject chosenPoint = hits.getJSONObject(usersChoice - 1).getJSONObject("point");
+        System.out.printf("Chosen location longitude: %f, latitude: %f %n", chosenPoint.getDouble("lng"), chosenPoint.getDouble("lat"));
+        return startChain(usersChoice, DEFAULT_DEADLINE);
+    }
+
+    public CompletableFuture<String> startChain(int hitIndex) {
+        return startChain(hitIndex, DEFAULT_DEADLINE);
+    }
+
+    // без консоли: hitIndex - номер варианта с 1 или BEST_MATCH; нет такого варианта - NoSuchElementException.
+    // за timeout приходит погода и те места, что успели ответить; без погоды - ошибка
+    public CompletableFuture<String> startChain(int hitIndex, Duration timeout) {
+        long deadline = HttpEngine.deadlineAfter(timeout);
+        return fetch(ResponseCache.Endpoint.GEOCODE, locationName, constructLocationURL(locationName), LOCATION_FIELDS, deadline, false)
+                .thenApply(data -> getLocationPoint(data, hitIndex))
+                .thenCompose(point -> getWeatherAndPlacesAsync(point, deadline));
     }
     
-    private CompletableFuture<String> getWeatherAndPlacesAsync(Point point) {
-        CompletableFuture<String> weatherFuture = getWeatherAsync(point);
-        CompletableFuture<String> placesFuture = getPlacesAsync(point);
+    private CompletableFuture<String> getWeatherAndPlacesAsync(Point point, long deadline) {
+        CompletableFuture<String> weatherFuture = getWeatherAsync(point, deadline);
+        CompletableFuture<String> placesFuture = getPlacesAsync(point, deadline);
         return weatherFuture.thenCombine(placesFuture, this::printSummary);
     }
 
@@ -37,70 +110,47 @@ public class GeoInfoApp {
     }
 
     public String constructWeatherURL(Point point) {
-        return String.format(Locale.US, "https://api.openweathermap.org/data/2.5/weather?lat=%f&lon=%f&units=metric&appid=%s", point.lat, point.lon, OPEN_WEATHER_API_KEY);
+        return String.format(Locale.US, "%s/data/2.5/weather?lat=%f&lon=%f&units=metric&appid=%s", api.openWeather(), point.lat, point.lon, OPEN_WEATHER_API_KEY);
     }
 
     public String constructPlacesOfInterestURL(Point point) {
-        return String.format(Locale.US, "http://api.opentripmap.com/0.1/en/places/radius?radius=2000&lon=%f&lat=%f&format=json&lang=en&rate=1&limit=%d&apikey=%s", point.lon, point.lat, MAX_PLACES_OF_INTEREST, OPEN_TRIP_MAP_API_KEY);
+        return String.format(Locale.US, "%s/0.1/en/places/radius?radius=2000&lon=%f&lat=%f&format=json&lang=en&rate=1&limit=%d&apikey=%s", api.openTripMap(), point.lon, point.lat, MAX_PLACES_OF_INTEREST, OPEN_TRIP_MAP_API_KEY);
     }
 
-    public String constructPlaceDescriptionURL(String xid) throws IOException {
-        return String.format(Locale.US, "http://api.opentripmap.com/0.1/ru/places/xid/%s?apikey=%s", xid, OPEN_TRIP_MAP_API_KEY);
+    public String constructPlaceDescriptionURL(String xid) {
+        return String.format(Locale.US, "%s/0.1/ru/places/xid/%s?apikey=%s", api.openTripMap(), xid, OPEN_TRIP_MAP_API_KEY);
     }
 
     public String constructLocationURL(String locationName) {
-        return String.format(Locale.US, "https://graphhopper.com/api/1/geocode?q=%s&locale=en&key=%s", locationName, GRAPH_HOPPER_API_KEY);
+        return String.format(Locale.US, "%s/api/1/geocode?q=%s&locale=en&key=%s", api.graphHopper(),
+                URLEncoder.encode(locationName, StandardCharsets.UTF_8), GRAPH_HOPPER_API_KEY);
     }
     
-    private Point getLocationPoint() {
-        try {
-            String data = fetchFromURL(constructLocationURL(locationName));
-            JSONObject jsonObject = new JSONObject(data);
-            JSONArray hits = jsonObject.getJSONArray("hits");
-            if (hits.isEmpty())
-                throw new CompletionException(new RuntimeException("No results"));
-            for (int i = 0; i < hits.length(); ++i) {
-                JSONObject hit = hits.getJSONObject(i);
-                System.out.printf("%d) %s - %s (%s, %s)%n", i + 1,
-                        hit.getString("country"),
-                        hit.getString("name"),
-                        hit.getString("osm_key"),
-                        hit.getString("osm_value"));
-            }
-            Scanner scanner = new Scanner(System.in);
-            int usersChoice = scanner.nextInt();
-            if (usersChoice < 1 || usersChoice > hits.length())
-                throw new CompletionException(new RuntimeException("Out of bounds"));
-
-            JSONObject chosenPoint = hits.getJSONObject(usersChoice - 1).getJSONObject("point");
-            double lng = chosenPoint.getDouble("lng");
-            double lat = chosenPoint.getDouble("lat");
-            System.out.printf("Chosen location longitude: %f, latitude: %f %n", lng, lat);
-            return new Point(lng, lat);
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            throw new CompletionException(new RuntimeException("No results"));
-        }
+    private Point getLocationPoint(String data, int hitIndex) {
+        JSONArray hits = new JSONObject(data).getJSONArray("hits");
+        if (hits.isEmpty())
+            throw new NoSuchElementException("No results");
+        if (hitIndex < 1 || hitIndex > hits.length())
+            throw new NoSuchElementException("Out of bounds");
+        JSONObject point = hits.getJSONObject(hitIndex - 1).getJSONObject("point");
+        return new Point(point.getDouble("lng"), point.getDouble("lat"));
     }
 
-    private CompletableFuture<String> getWeatherAsync(Point point) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String data = fetchFromURL(constructWeatherURL(point));
-                JSONObject jsonObject = new JSONObject(data);
-                JSONArray weather = jsonObject.getJSONArray("weather");
-                JSONObject main = jsonObject.getJSONObject("main");
-                return String.format("Weather: %s %nTemp: %s℃ %nFeels like: %s℃ %nPressure: %d %nHumidity: %d %nWind speed: %f %n",
-                        weather.getJSONObject(0).getString("main"),
-                        main.getDouble("temp"),
-                        main.getDouble("feels_like"),
-                        main.getInt("pressure"),
-                        main.getInt("humidity"),
-                        jsonObject.getJSONObject("wind").getDouble("speed"));
-            } catch (IOException e) {
-                throw new CompletionException(e);
-            }
-        });
+    private CompletableFuture<String> getWeatherAsync(Point point, long deadline) {
+        Point rounded = point.rounded(WEATHER_DECIMALS);
+        return fetch(ResponseCache.Endpoint.WEATHER, rounded.key(), constructWeatherURL(rounded), WEATHER_FIELDS, deadline, false)
+                .thenApply(data -> {
+                    JSONObject jsonObject = new JSONObject(data);
+                    JSONArray weather = jsonObject.getJSONArray("weather");
+                    JSONObject main = jsonObject.getJSONObject("main");
+                    return String.format("Weather: %s %nTemp: %s℃ %nFeels like: %s℃ %nPressure: %d %nHumidity: %d %nWind speed: %f %n",
+                            weather.getJSONObject(0).getString("main"),
+                            main.getDouble("temp"),
+                            main.getDouble("feels_like"),
+                            main.getInt("pressure"),
+                            main.getInt("humidity"),
+                            jsonObject.getJSONObject("wind").getDouble("speed"));
+                });
     }
 
     private static <String> CompletableFuture<List<String>> sequence(List<CompletableFuture<String>> futures) {
@@ -108,63 +158,74 @@ public class GeoInfoApp {
         return allDone.thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
     }
 
-    private CompletableFuture<String> getPlacesAsync(Point point) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String data = fetchFromURL(constructPlacesOfInterestURL(point));
-                if ("{}".equals(data.trim()))
-                    return new JSONArray();
-                return new JSONArray(data);
-            } catch (IOException e) {
-                throw new CompletionException(e);
-            }
-        }).thenCompose(placesArray -> {
-            if (placesArray.isEmpty())
-                return CompletableFuture.completedFuture("No places of interest found nearby\n");
-
-            List<CompletableFuture<String>> detailFutures = new ArrayList<>();
-            for (int i = 0; i < placesArray.length(); ++i) {
-                String xid = placesArray.getJSONObject(i).getString("xid");
-                CompletableFuture<String> detail = CompletableFuture.supplyAsync(() -> {
-                    try {
-                        return fetchFromURL(constructPlaceDescriptionURL(xid));
-                    } catch (IOException e) {
-                        throw new CompletionException(new RuntimeException("Failed to fetch details for: " + xid, e));
+    // не успевшие к сроку или упавшие места пропускаются, о них остаётся одна строка в конце
+    private CompletableFuture<String> getPlacesAsync(Point point, long deadline) {
+        Point rounded = point.rounded(PLACES_DECIMALS);
+        return fetch(ResponseCache.Endpoint.PLACES, rounded.key(), constructPlacesOfInterestURL(rounded), PLACES_FIELDS, deadline, false)
+                .thenApply(data -> {
+                    if ("{}".equals(data.trim()))
+                        return new JSONArray();
+                    return new JSONArray(data);
+                })
+                .thenCompose(placesArray -> {
+                    if (placesArray.isEmpty())
+                        return CompletableFuture.completedFuture("No places of interest found nearby\n");
+
+                    List<CompletableFuture<String>> detailFutures = new ArrayList<>();
+                    for (int i = 0; i < placesArray.length(); ++i) {
+                        String xid = placesArray.getJSONObject(i).getString("xid");
+                        CompletableFuture<String> detail = fetch(ResponseCache.Endpoint.PLACE_DETAILS, xid,
+                                constructPlaceDescriptionURL(xid), PLACE_DESCRIPTION_FIELDS, deadline, true)
+                                .thenApply(this::describePlace)
+                                .exceptionally(e -> null);
+                        detailFutures.add(detail);
                     }
-                });
-                detailFutures.add(detail);
-            }
 
-            return sequence(detailFutures)
-                    .thenApply(descriptions -> {
-                        StringBuilder sb = new StringBuilder();
-                        for (String json : descriptions) {
-                            JSONObject printableDesc = new JSONObject(json);
-                            sb.append("Name: ").append(printableDesc.getString("name")).append('\n')
-                                    .append("Kinds: ").append(printableDesc.getString("kinds")).append('\n');
-                            if (!printableDesc.isNull("wikipedia_extracts")) {
-                                sb.append("Description: ")
-                                        .append(printableDesc.getJSONObject("wikipedia_extracts").getString("text"))
-                                        .append('\n');
-                            }
-                            sb.append('\n');
-                        }
-                        return sb.toString();
-                    });
-        });
+                    return sequence(detailFutures)
+                            .thenApply(descriptions -> {
+                                StringBuilder sb = new StringBuilder();
+                                int missing = 0;
+                                for (String description : descriptions) {
+                                    if (description == null)
+                                        ++missing;
+                                    else
+                                        sb.append(description);
+                                }
+                                if (missing > 0)
+                                    sb.append(missing).append(" of ").append(descriptions.size()).append(" places did not respond in time\n");
+                                return sb.toString();
+                            });
+                })
+                .exceptionally(e -> "Places of interest unavailable: "
+                        + (e instanceof CompletionException && e.getCause() != null ? e.getCause() : e) + "\n");
     }
-    
-    private static String fetchFromURL(String URLString) throws IOException {
+
+    private String describePlace(String json) {
         StringBuilder sb = new StringBuilder();
-        URL url = new URL(URLString);
-        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
-        connection.setRequestMethod("GET");
-
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        String line;
-        while ((line = in.readLine()) != null)
-            sb.append(line);
-        in.close();
+        JSONObject printableDesc = new JSONObject(json);
+        sb.append("Name: ").append(printableDesc.getString("name")).append('\n')
+                .append("Kinds: ").append(printableDesc.getString("kinds")).append('\n');
+        if (!printableDesc.isNull("wikipedia_extracts")) {
+            sb.append("Description: ")
+                    .append(printableDesc.getJSONObject("wikipedia_extracts").getString("text"))
+                    .append('\n');
+        }
+        sb.append('\n');
         return sb.toString();
     }
-}
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(deadline - System.nanoTime(), 0);
+    }
+
+    // в кэш попадает уже урезанный ответ. загрузка одна на все склеенные вызовы, поэтому её срок не короче
+    // DEFAULT_DEADLINE и не зависит от того, кто пришёл первым (hedge у одного endpoint всегда одинаков);
+    // срок вызова действует только на его копию результата: при TimeoutException загрузка продолжается для остальных
+    private CompletableFuture<String> fetch(ResponseCache.Endpoint endpoint, String key, String url, String[] fields,
+                                            long deadline, boolean hedge) {
+        long sharedDeadline = HttpEngine.deadlineAfter(DEFAULT_DEADLINE);
+        long loadDeadline = deadline - sharedDeadline > 0 ? deadline : sharedDeadline;
+        return cache.get(endpoint, key, () -> http.fetchJsonAsync(url, loadDeadline, hedge, fields))
+                .orTimeout(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+    }
+}
\ No newline at end of file
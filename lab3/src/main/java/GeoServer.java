@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// GeoInfoApp как локальный HTTP-сервис: GET /lookup?q=место[&hit=N|best][&timeout=мс] -> текст сводки.
+// обработчик только запускает цепочку, ответ пишется из её завершения, поэтому потоков сервера
+// хватает на сколько угодно одновременных запросов; одинаковые запросы в полёте склеиваются
+public class GeoServer {
+    private static final int BACKLOG = 1024;
+    private static final int HANDLER_THREADS = 2;
+
+    private final int port;
+    private final HttpEngine http;
+    private final ResponseCache cache;
+    // вся сводка по месту и варианту; ниже, в ResponseCache, склеиваются и отдельные запросы к API
+    private final SingleFlight<String, String> lookups = new SingleFlight<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public GeoServer(int port, HttpEngine http, ResponseCache cache) {
+        this.port = port;
+        this.http = http;
+        this.cache = cache;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        executor = Executors.newFixedThreadPool(HANDLER_THREADS);
+        server.setExecutor(executor);
+        server.createContext("/lookup", this::lookup);
+        server.start();
+        System.out.println("Сервис запущен на порту " + server.getAddress().getPort());
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void lookup(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Only GET is supported\n");
+            return;
+        }
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String query = params.get("q");
+        if (query == null || query.isBlank()) {
+            respond(exchange, 400, "Missing parameter q\n");
+            return;
+        }
+        int hitIndex;
+        Duration timeout;
+        try {
+            String hit = params.getOrDefault("hit", "best");
+            hitIndex = "best".equals(hit) ? GeoInfoApp.BEST_MATCH : Integer.parseInt(hit);
+            timeout = params.containsKey("timeout")
+                    ? Duration.ofMillis(Long.parseLong(params.get("timeout")))
+                    : GeoInfoApp.DEFAULT_DEADLINE;
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, "Parameters hit and timeout must be numbers\n");
+            return;
+        }
+        if (hitIndex < 1) {
+            respond(exchange, 400, "Parameter hit must be at least 1\n");
+            return;
+        }
+
+        GeoInfoApp app = new GeoInfoApp(query, http, cache);
+        // склеиваются только поиски с тем же сроком, иначе короткий срок первого обрывал бы остальных;
+        // загрузки из API при разных сроках всё равно общие через кэш
+        lookups.run(app.locationName() + "#" + hitIndex + "#" + timeout.toMillis(), () -> app.startChain(hitIndex, timeout))
+                .whenComplete((summary, error) -> {
+                    if (error == null) {
+                        respond(exchange, 200, summary);
+                        return;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+                    respond(exchange, cause instanceof NoSuchElementException ? 404 : 502, message + "\n");
+                });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // клиент не дождался ответа
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null)
+            return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0)
+                continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
\ No newline at end of file
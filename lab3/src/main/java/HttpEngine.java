@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HttpEngine {
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    private static final int DEFAULT_MAX_QUEUED = 1000;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // задержка хеджирования - p95 последних ответов upstream, пока их мало - значение по умолчанию
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 16;
+    private static final long DEFAULT_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static HttpEngine shared;
+
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final int maxInFlight;
+    private final int maxQueued;
+    // по хосту: GraphHopper, OpenWeather и OpenTripMap ограничиваются независимо
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    private class Upstream {
+        final Bulkhead bulkhead = new Bulkhead(maxInFlight, maxQueued);
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int samples = 0;
+
+        synchronized void recordLatency(long nanos) {
+            latencies[samples++ % LATENCY_SAMPLES] = nanos;
+        }
+
+        synchronized long hedgeDelayNanos() {
+            if (samples < MIN_LATENCY_SAMPLES)
+                return DEFAULT_HEDGE_DELAY_NANOS;
+            long[] sorted = Arrays.copyOf(latencies, Math.min(samples, LATENCY_SAMPLES));
+            Arrays.sort(sorted);
+            return Math.max(sorted[sorted.length * 95 / 100], MIN_HEDGE_DELAY_NANOS);
+        }
+    }
+
+    // один клиент на все запросы: соединения переиспользуются, по HTTP/2 (https, через ALPN) запросы мультиплексируются
+    // в одном соединении; потоки executor только выполняют продолжения, сеть никто не ждёт
+    public HttpEngine(int threads) {
+        this(threads, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_QUEUED);
+    }
+
+    // maxInFlight и maxQueued - на каждый upstream (хост)
+    public HttpEngine(int threads, int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "geo-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor)
+                .build();
+    }
+
+    public static synchronized HttpEngine shared() {
+        if (shared == null)
+            shared = new HttpEngine(DEFAULT_THREADS);
+        return shared;
+    }
+
+    // срок для запроса без общего дедлайна
+    public static long deadlineAfter(Duration timeout) {
+        return System.nanoTime() + timeout.toNanos();
+    }
+
+    public CompletableFuture<String> fetchAsync(String url) {
+        URI uri = URI.create(url);
+        long deadline = deadlineAfter(REQUEST_TIMEOUT);
+        return upstream(uri).bulkhead.submit(deadline, () -> send(uri, deadline, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    public CompletableFuture<String> fetchJsonAsync(String url, String... paths) {
+        return fetchJsonAsync(url, deadlineAfter(REQUEST_TIMEOUT), false, paths);
+    }
+
+    // только поля по paths (см. JsonExtractor), собранные в компактный JSON по мере прихода тела.
+    // deadline - по System.nanoTime(), общий для всех стадий цепочки: и ожидание в очереди upstream, и сам запрос.
+    // hedge - если ответа нет дольше обычного для upstream, тот же запрос дублируется (только при свободном слоте),
+    // берётся первый успешный ответ, второй отменяется
+    public CompletableFuture<String> fetchJsonAsync(String url, long deadline, boolean hedge, String... paths) {
+        URI uri = URI.create(url);
+        Upstream upstream = upstream(uri);
+        HttpResponse.BodyHandler<Object> handler = info -> info.statusCode() / 100 == 2
+                ? new JsonExtractor(paths)
+                : HttpResponse.BodySubscribers.replacing(null);
+        CompletableFuture<Object> primary = upstream.bulkhead.submit(deadline, () -> timedSend(upstream, uri, deadline, handler));
+        if (!hedge)
+            return primary.thenApply(String::valueOf);
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        // ошибка отдаётся, только когда не удались все отправленные копии
+        AtomicInteger outstanding = new AtomicInteger(1);
+        race(primary, result, outstanding, false);
+        long delay = Math.min(upstream.hedgeDelayNanos(), deadline - System.nanoTime());
+        CompletableFuture.delayedExecutor(Math.max(delay, 0), TimeUnit.NANOSECONDS, executor).execute(() -> {
+            if (result.isDone() || System.nanoTime() - deadline >= 0)
+                return;
+            outstanding.incrementAndGet();
+            CompletableFuture<Object> backup = upstream.bulkhead.trySubmit(() -> timedSend(upstream, uri, deadline, handler));
+            if (backup == null) {
+                outstanding.decrementAndGet();
+                return;
+            }
+            hedged.increment();
+            race(backup, result, outstanding, true);
+            result.whenComplete((value, error) -> backup.cancel(true));
+        });
+        result.whenComplete((value, error) -> primary.cancel(true));
+        return result.thenApply(String::valueOf);
+    }
+
+    private void race(CompletableFuture<Object> attempt, CompletableFuture<Object> result, AtomicInteger outstanding, boolean isHedge) {
+        attempt.whenComplete((value, error) -> {
+            if (error == null) {
+                if (result.complete(value) && isHedge)
+                    hedgeWins.increment();
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    private Upstream upstream(URI uri) {
+        return upstreams.computeIfAbsent(uri.getHost() + ":" + uri.getPort(), host -> new Upstream());
+    }
+
+    // время учитывается и у неудачных и отменённых попыток (для отменённой это нижняя оценка):
+    // если считать только успешные, медленные попытки, проигравшие дублю, в выборку не попадают,
+    // p95 занижается и дублирование срабатывает всё чаще
+    private <T> CompletableFuture<T> timedSend(Upstream upstream, URI uri, long deadline, HttpResponse.BodyHandler<T> handler) {
+        long start = System.nanoTime();
+        CompletableFuture<T> response = send(uri, deadline, handler);
+        response.whenComplete((value, error) -> upstream.recordLatency(System.nanoTime() - start));
+        return response;
+    }
+
+    // таймаут запроса - остаток до дедлайна; отмена результата обрывает обмен
+    private <T> CompletableFuture<T> send(URI uri, long deadline, HttpResponse.BodyHandler<T> handler) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0)
+            return CompletableFuture.failedFuture(new HttpTimeoutException("Deadline exceeded before request to " + uri));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofNanos(Math.min(remaining, REQUEST_TIMEOUT.toNanos())))
+                .GET();
+        // по http HTTP/2 клиента означает попытку Upgrade: h2c в каждом новом соединении, которую заглушки
+        // и обычные серверы отклоняют, - такие запросы сразу идут по HTTP/1.1
+        if ("http".equalsIgnoreCase(uri.getScheme()))
+            builder.version(HttpClient.Version.HTTP_1_1);
+        HttpRequest request = builder.build();
+        CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(request, handler);
+        CompletableFuture<T> body = exchange.thenApply(response -> {
+            if (response.statusCode() / 100 != 2)
+                throw new CompletionException(new IOException("Server returned HTTP response code: "
+                        + response.statusCode() + " for URL: " + uri));
+            return response.body();
+        });
+        body.whenComplete((value, error) -> {
+            if (body.isCancelled())
+                exchange.cancel(true);
+        });
+        return body;
+    }
+
+    // сколько раз запрос продублирован и сколько раз дубль ответил первым
+    public long hedged() {
+        return hedged.sum();
+    }
+
+    public long hedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public void close() {
+        executor.shutdown();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,358 @@
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// потоковое извлечение полей из JSON-ответа: тело разбирается кусками по мере прихода из HttpClient,
+// собираются только значения по заданным путям ("main.temp", "hits[].point", "[].xid"),
+// остальные поддеревья пролистываются посимвольно, ничего не накапливая.
+// результат - JSONObject/JSONArray с той же структурой, но без лишних полей
+public class JsonExtractor implements HttpResponse.BodySubscriber<Object> {
+    private static final int MAX_BARE_TOKEN = 64;
+    private static final int CHAR_BUFFER = 8192;
+
+    // дерево путей; all - значение нужно целиком
+    private static class PathNode {
+        final Map<String, PathNode> fields = new HashMap<>();
+        PathNode elements;
+        boolean all = false;
+
+        PathNode field(String name) {
+            return all ? this : fields.get(name);
+        }
+
+        PathNode element() {
+            return all ? this : elements;
+        }
+    }
+
+    private static class Frame {
+        final boolean object;
+        // null - поддерево пролистывается
+        final Object container;
+        final PathNode path;
+        String name;
+
+        Frame(boolean object, Object container, PathNode path) {
+            this.object = object;
+            this.container = container;
+            this.path = path;
+        }
+    }
+
+    private enum State { VALUE, FIRST_VALUE_OR_END, NAME_OR_END, NAME, COLON, AFTER_VALUE, STRING, BARE, DONE }
+
+    private final PathNode root = new PathNode();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private State state = State.VALUE;
+    private long position = 0;
+    private Object result;
+
+    private boolean stringIsName;
+    private boolean keepString;
+    // 0 - нет, 1 - после обратной косой черты, 2..5 - шестнадцатеричные цифры после u
+    private int escape = 0;
+    private int unicode;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder bare = new StringBuilder();
+    private boolean keepBare;
+
+    private final CompletableFuture<Object> body = new CompletableFuture<>();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER);
+    // хвост многобайтового символа, разрезанного границей куска
+    private ByteBuffer leftover;
+    private Flow.Subscription subscription;
+
+    public JsonExtractor(String... paths) {
+        for (String path : paths) {
+            PathNode node = root;
+            for (String segment : path.split("\\.")) {
+                boolean array = segment.endsWith("[]");
+                String name = array ? segment.substring(0, segment.length() - 2) : segment;
+                if (!name.isEmpty())
+                    node = node.fields.computeIfAbsent(name, n -> new PathNode());
+                if (array) {
+                    if (node.elements == null)
+                        node.elements = new PathNode();
+                    node = node.elements;
+                }
+            }
+            node.all = true;
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        try {
+            for (ByteBuffer item : items)
+                decode(item, false);
+            subscription.request(1);
+        } catch (IOException | RuntimeException e) {
+            subscription.cancel();
+            body.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            decode(ByteBuffer.allocate(0), true);
+            body.complete(finish());
+        } catch (IOException | RuntimeException e) {
+            body.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public CompletionStage<Object> getBody() {
+        return body;
+    }
+
+    private void decode(ByteBuffer in, boolean endOfInput) throws IOException {
+        if (leftover != null) {
+            in = ByteBuffer.allocate(leftover.remaining() + in.remaining()).put(leftover).put(in).flip();
+            leftover = null;
+        }
+        while (true) {
+            CoderResult coderResult = decoder.decode(in, chars, endOfInput);
+            if (coderResult.isError())
+                throw new IOException("Invalid UTF-8 in response body");
+            feed(chars.flip());
+            chars.clear();
+            if (!coderResult.isOverflow())
+                break;
+        }
+        if (in.hasRemaining())
+            leftover = ByteBuffer.allocate(in.remaining()).put(in).flip();
+        if (endOfInput) {
+            decoder.flush(chars);
+            feed(chars.flip());
+            chars.clear();
+        }
+    }
+
+    // очередной кусок текста; состояние разбора сохраняется между кусками
+    void feed(CharBuffer input) throws IOException {
+        while (input.hasRemaining()) {
+            char c = input.get();
+            ++position;
+            if (state == State.STRING) {
+                onStringChar(c);
+                continue;
+            }
+            if (state == State.BARE) {
+                if (isBareChar(c)) {
+                    if (bare.length() >= MAX_BARE_TOKEN)
+                        throw malformed();
+                    bare.append(c);
+                    continue;
+                }
+                finishBare();
+                // разделитель после числа разбирается как обычно
+            }
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+                continue;
+            switch (state) {
+                case VALUE -> startValue(c);
+                case FIRST_VALUE_OR_END -> {
+                    if (c == ']')
+                        endContainer();
+                    else
+                        startValue(c);
+                }
+                case NAME_OR_END -> {
+                    if (c == '}')
+                        endContainer();
+                    else
+                        startName(c);
+                }
+                case NAME -> startName(c);
+                case COLON -> {
+                    if (c != ':')
+                        throw malformed();
+                    state = State.VALUE;
+                }
+                case AFTER_VALUE -> {
+                    Frame top = stack.peek();
+                    if (c == ',')
+                        state = top.object ? State.NAME : State.VALUE;
+                    else if (c == (top.object ? '}' : ']'))
+                        endContainer();
+                    else
+                        throw malformed();
+                }
+                default -> throw malformed();
+            }
+        }
+    }
+
+    // извлечённое дерево, когда весь текст подан
+    Object finish() throws IOException {
+        if (state == State.BARE)
+            finishBare();
+        if (state != State.DONE)
+            throw new IOException("Unexpected end of JSON at char " + position);
+        return result;
+    }
+
+    private PathNode currentPath() {
+        Frame top = stack.peek();
+        if (top == null)
+            return root;
+        if (top.path == null)
+            return null;
+        return top.object ? top.path.field(top.name) : top.path.element();
+    }
+
+    private void startValue(char c) throws IOException {
+        PathNode path = currentPath();
+        switch (c) {
+            case '{' -> {
+                stack.push(new Frame(true, path == null ? null : new JSONObject(), path));
+                state = State.NAME_OR_END;
+            }
+            case '[' -> {
+                stack.push(new Frame(false, path == null ? null : new JSONArray(), path));
+                state = State.FIRST_VALUE_OR_END;
+            }
+            case '"' -> startString(false, path != null && path.all);
+            default -> {
+                if (!isBareChar(c))
+                    throw malformed();
+                bare.setLength(0);
+                bare.append(c);
+                keepBare = path != null && path.all;
+                state = State.BARE;
+            }
+        }
+    }
+
+    private void startName(char c) throws IOException {
+        if (c != '"')
+            throw malformed();
+        // имена внутри пролистываемого поддерева не нужны
+        startString(true, stack.peek().path != null);
+    }
+
+    private void startString(boolean isName, boolean keep) {
+        stringIsName = isName;
+        keepString = keep;
+        text.setLength(0);
+        escape = 0;
+        state = State.STRING;
+    }
+
+    private void onStringChar(char c) throws IOException {
+        if (escape == 1) {
+            escape = 0;
+            switch (c) {
+                case '"', '\\', '/' -> appendString(c);
+                case 'b' -> appendString('\b');
+                case 'f' -> appendString('\f');
+                case 'n' -> appendString('\n');
+                case 'r' -> appendString('\r');
+                case 't' -> appendString('\t');
+                case 'u' -> {
+                    escape = 2;
+                    unicode = 0;
+                }
+                default -> throw malformed();
+            }
+        } else if (escape >= 2) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0)
+                throw malformed();
+            unicode = unicode * 16 + digit;
+            if (++escape == 6) {
+                escape = 0;
+                appendString((char) unicode);
+            }
+        } else if (c == '\\') {
+            escape = 1;
+        } else if (c == '"') {
+            finishString();
+        } else {
+            appendString(c);
+        }
+    }
+
+    private void appendString(char c) {
+        if (keepString)
+            text.append(c);
+    }
+
+    private void finishString() {
+        if (stringIsName) {
+            stack.peek().name = keepString ? text.toString() : null;
+            state = State.COLON;
+            return;
+        }
+        if (keepString)
+            attach(text.toString());
+        valueDone();
+    }
+
+    private void finishBare() throws IOException {
+        Object value = JSONObject.stringToValue(bare.toString());
+        if (value instanceof String)
+            throw malformed();
+        if (keepBare)
+            attach(value);
+        valueDone();
+    }
+
+    private void endContainer() {
+        Frame frame = stack.pop();
+        if (frame.container != null)
+            attach(frame.container);
+        valueDone();
+    }
+
+    private void attach(Object value) {
+        Frame parent = stack.peek();
+        if (parent == null)
+            result = value;
+        else if (parent.object)
+            ((JSONObject) parent.container).put(parent.name, value);
+        else
+            ((JSONArray) parent.container).put(value);
+    }
+
+    private void valueDone() {
+        state = stack.isEmpty() ? State.DONE : State.AFTER_VALUE;
+    }
+
+    private static boolean isBareChar(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '-' || c == '+' || c == '.';
+    }
+
+    private IOException malformed() {
+        return new IOException("Malformed JSON at char " + position);
+    }
+}
\ No newline at end of file
@@ -1,13 +1,25 @@
+import java.io.IOException;
 import java.util.Scanner;
 import java.util.concurrent.CompletableFuture;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length >= 2 && args[0].equals("--serve")) {
+            GeoServer server = new GeoServer(Integer.parseInt(args[1]), HttpEngine.shared(), ResponseCache.shared());
+            try {
+                server.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            return;
+        }
+
         System.out.println("Введите название места: ");
         Scanner scanner = new Scanner(System.in);
         GeoInfoApp app = new GeoInfoApp(scanner.nextLine());
         try {
-            CompletableFuture<String> future = app.startChain();
+            CompletableFuture<String> future = app.startChain(scanner);
             System.out.println(future.get());
         } catch (Exception e) {
             System.out.println(e.getMessage());
@@ -1,3 +1,5 @@
+import java.util.Locale;
+
 public class Point {
     final double lon;
     final double lat;
@@ -6,4 +8,14 @@ public class Point {
         this.lon = lon;
         this.lat = lat;
     }
+
+    // соседние точки после округления совпадают и делят одну запись кэша
+    Point rounded(int decimals) {
+        double scale = Math.pow(10, decimals);
+        return new Point(Math.round(lon * scale) / scale, Math.round(lat * scale) / scale);
+    }
+
+    String key() {
+        return String.format(Locale.US, "%f,%f", lat, lon);
+    }
 }
\ No newline at end of file
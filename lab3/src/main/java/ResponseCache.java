@@ -0,0 +1,241 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.ObjectName;
+
+// кэш ответов API в два уровня: LRU в памяти с ограничением по числу записей и необязательный
+// каталог на диске, переживающий перезапуск; срок жизни свой у каждого endpoint.
+// диск трогается только в своём потоке, цепочка запросов на нём не ждёт;
+// одновременные промахи по одному ключу идут в сеть одним запросом
+public class ResponseCache implements ResponseCacheMBean {
+    public enum Endpoint {
+        GEOCODE(Duration.ofDays(7)),
+        WEATHER(Duration.ofMinutes(10)),
+        PLACES(Duration.ofDays(1)),
+        PLACE_DETAILS(Duration.ofDays(30));
+
+        final Duration ttl;
+
+        Endpoint(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    private static final int DEFAULT_MEMORY_ENTRIES = 1000;
+
+    private static ResponseCache shared;
+
+    private record Entry(String body, long expiresAt) {
+        boolean expired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    private static class Counters {
+        final LongAdder memoryHits = new LongAdder();
+        final LongAdder diskHits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+    }
+
+    private final int maxMemoryEntries;
+    // null - без дискового уровня
+    private final Path diskDir;
+    private final ExecutorService diskExecutor;
+    private final LinkedHashMap<String, Entry> memory;
+    private final Map<Endpoint, Counters> counters = new EnumMap<>(Endpoint.class);
+
+    public ResponseCache(int maxMemoryEntries, Path diskDir) {
+        this.maxMemoryEntries = maxMemoryEntries;
+        this.diskDir = diskDir;
+        // порядок доступа: первым идёт давно не читанный, он и вытесняется
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxMemoryEntries;
+            }
+        };
+        for (Endpoint endpoint : Endpoint.values())
+            counters.put(endpoint, new Counters());
+        this.diskExecutor = diskDir == null ? null : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "geo-cache-disk");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // размер и каталог из -Dlab3.cache.size и -Dlab3.cache.dir (без него - только память)
+    public static synchronized ResponseCache shared() {
+        if (shared == null) {
+            String dir = System.getProperty("lab3.cache.dir");
+            shared = new ResponseCache(Integer.getInteger("lab3.cache.size", DEFAULT_MEMORY_ENTRIES),
+                    dir == null ? null : Paths.get(dir));
+            shared.registerMBean();
+        }
+        return shared;
+    }
+
+    void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("lab3:type=ResponseCache"));
+        } catch (Exception e) {
+            System.out.println("Failed to register MBean: " + e.getMessage());
+        }
+    }
+
+    // ответ из памяти, с диска или от loader; ответ loader сохраняется в оба уровня
+    public CompletableFuture<String> get(Endpoint endpoint, String key, Supplier<CompletableFuture<String>> loader) {
+        String fullKey = endpoint.name() + ":" + key;
+        Counters counter = counters.get(endpoint);
+        Entry entry = fromMemory(fullKey);
+        if (entry != null) {
+            counter.memoryHits.increment();
+            return CompletableFuture.completedFuture(entry.body());
+        }
+        return counter.flights.run(fullKey, () -> {
+            if (diskDir == null)
+                return load(endpoint, fullKey, counter, loader);
+            return CompletableFuture.supplyAsync(() -> fromDisk(fullKey), diskExecutor).thenCompose(fromDisk -> {
+                if (fromDisk == null)
+                    return load(endpoint, fullKey, counter, loader);
+                counter.diskHits.increment();
+                toMemory(fullKey, fromDisk);
+                return CompletableFuture.completedFuture(fromDisk.body());
+            });
+        });
+    }
+
+    private CompletableFuture<String> load(Endpoint endpoint, String fullKey, Counters counter,
+                                           Supplier<CompletableFuture<String>> loader) {
+        counter.misses.increment();
+        return loader.get().thenApply(body -> {
+            Entry entry = new Entry(body, System.currentTimeMillis() + endpoint.ttl.toMillis());
+            toMemory(fullKey, entry);
+            if (diskDir != null)
+                diskExecutor.execute(() -> toDisk(fullKey, entry));
+            return body;
+        });
+    }
+
+    private synchronized Entry fromMemory(String fullKey) {
+        Entry entry = memory.get(fullKey);
+        if (entry != null && entry.expired()) {
+            memory.remove(fullKey);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void toMemory(String fullKey, Entry entry) {
+        memory.put(fullKey, entry);
+    }
+
+    private Path diskPath(String fullKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fullKey.getBytes(StandardCharsets.UTF_8));
+            return diskDir.resolve(HexFormat.of().formatHex(digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // null - записи нет, она устарела или повреждена
+    private Entry fromDisk(String fullKey) {
+        Path path = diskPath(fullKey);
+        if (!Files.exists(path))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long expiresAt = in.readLong();
+            String storedKey = in.readUTF();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            Entry entry = new Entry(new String(body, StandardCharsets.UTF_8), expiresAt);
+            if (!storedKey.equals(fullKey) || entry.expired()) {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            System.out.println("Corrupted cache entry " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // через временный файл и атомарную замену, чтобы прерванная запись не оставила обрезанный ответ
+    private void toDisk(String fullKey, Entry entry) {
+        Path path = diskPath(fullKey);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(diskDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                byte[] body = entry.body().getBytes(StandardCharsets.UTF_8);
+                out.writeLong(entry.expiresAt());
+                out.writeUTF(fullKey);
+                out.writeInt(body.length);
+                out.write(body);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Failed to write cache entry " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getMemoryHits() {
+        return counters.values().stream().mapToLong(c -> c.memoryHits.sum()).sum();
+    }
+
+    @Override
+    public long getDiskHits() {
+        return counters.values().stream().mapToLong(c -> c.diskHits.sum()).sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return counters.values().stream().mapToLong(c -> c.misses.sum()).sum();
+    }
+
+    @Override
+    public long getCoalesced() {
+        return counters.values().stream().mapToLong(c -> c.flights.coalesced()).sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = getMemoryHits() + getDiskHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized int getMemoryEntries() {
+        return memory.size();
+    }
+
+    @Override
+    public String[] getEndpointStats() {
+        return counters.entrySet().stream()
+                .map(e -> String.format("%s memory=%d disk=%d miss=%d coalesced=%d", e.getKey(),
+                        e.getValue().memoryHits.sum(), e.getValue().diskHits.sum(), e.getValue().misses.sum(),
+                        e.getValue().flights.coalesced()))
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public synchronized void clearMemory() {
+        memory.clear();
+    }
+}
\ No newline at end of file
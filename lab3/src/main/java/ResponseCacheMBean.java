@@ -0,0 +1,20 @@
+// счётчики ResponseCache для JMX: попадания в память, на диск, промахи (запросы в сеть)
+// и промахи, присоединившиеся к уже летящему запросу
+public interface ResponseCacheMBean {
+    long getMemoryHits();
+
+    long getDiskHits();
+
+    long getMisses();
+
+    long getCoalesced();
+
+    double getHitRatio();
+
+    int getMemoryEntries();
+
+    // по одной строке на endpoint: "WEATHER memory=... disk=... miss=... coalesced=..."
+    String[] getEndpointStats();
+
+    void clearMemory();
+}
\ No newline at end of file
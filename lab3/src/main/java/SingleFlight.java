@@ -0,0 +1,44 @@
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// одинаковые запросы, пришедшие, пока первый ещё в полёте, не выполняются заново, а ждут его результат;
+// после завершения ключ освобождается, следующий запрос идёт заново (или в кэш)
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CompletableFuture<V> run(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            // копия, чтобы отмена одним ожидающим не задела остальных
+            return existing.copy();
+        }
+        try {
+            call.get().whenComplete((value, error) -> {
+                inFlight.remove(key, flight);
+                if (error != null)
+                    flight.completeExceptionally(error);
+                else
+                    flight.complete(value);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight.copy();
+    }
+
+    // сколько запросов присоединилось к уже летящему
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonExtractorTest {
+    private static final String WEATHER = """
+            {"coord": {"lon": 82.93, "lat": 55.03},
+             "weather": [{"id": 800, "main": "Clear", "description": "ясно ☀ \\"{[\\" 😀"}],
+             "main": {"temp": -12.5, "feels_like": -18.1, "pressure": 1024},
+             "visibility": 10000, "wind": {"speed": 3, "deg": 200}, "snow": null, "ok": true,
+             "name": "Новосибирск"}
+            """;
+
+    private static final Flow.Subscription NO_OP = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    // тело приходит кусками по chunkSize байт, как от HttpClient
+    private static Object extract(byte[] body, int chunkSize, String... paths) {
+        JsonExtractor extractor = new JsonExtractor(paths);
+        extractor.onSubscribe(NO_OP);
+        for (int i = 0; i < body.length; i += chunkSize) {
+            byte[] chunk = Arrays.copyOfRange(body, i, Math.min(i + chunkSize, body.length));
+            extractor.onNext(List.of(ByteBuffer.wrap(chunk)));
+        }
+        extractor.onComplete();
+        return extractor.getBody().toCompletableFuture().join();
+    }
+
+    private static Object extract(String body, int chunkSize, String... paths) {
+        return extract(body.getBytes(StandardCharsets.UTF_8), chunkSize, paths);
+    }
+
+    @Test
+    void onlyRequestedPathsAreKept() {
+        JSONObject result = (JSONObject) extract(WEATHER, 4096, "main.temp", "weather[].description", "name");
+
+        JSONObject expected = new JSONObject()
+                .put("main", new JSONObject().put("temp", -12.5))
+                .put("weather", new JSONArray().put(new JSONObject().put("description", "ясно ☀ \"{[\" 😀")))
+                .put("name", "Новосибирск");
+        assertTrue(expected.similar(result), result.toString());
+    }
+
+    @Test
+    void wholeSubtreeAndScalarsAreKept() {
+        JSONObject result = (JSONObject) extract(WEATHER, 4096, "coord", "snow", "ok", "visibility");
+
+        assertTrue(new JSONObject("{\"lon\": 82.93, \"lat\": 55.03}").similar(result.getJSONObject("coord")));
+        assertEquals(JSONObject.NULL, result.get("snow"));
+        assertEquals(true, result.get("ok"));
+        assertEquals(10000, result.getInt("visibility"));
+        assertEquals(4, result.length());
+    }
+
+    @Test
+    void rootArrayPaths() {
+        String places = "[{\"xid\": \"N1\", \"name\": \"a\"}, {\"name\": \"b\", \"xid\": \"W2\"}, {\"name\": \"c\"}]";
+        JSONArray result = (JSONArray) extract(places, 4096, "[].xid");
+
+        assertTrue(new JSONArray("[{\"xid\": \"N1\"}, {\"xid\": \"W2\"}, {}]").similar(result), result.toString());
+    }
+
+    // каждая граница куска, в том числе внутри многобайтовых символов, чисел, escape-последовательностей и \\u
+    @Test
+    void resultDoesNotDependOnChunkBoundaries() {
+        String[] paths = { "main.temp", "weather[].description", "name", "wind" };
+        Object whole = extract(WEATHER, Integer.MAX_VALUE, paths);
+        for (int chunkSize = 1; chunkSize <= 17; ++chunkSize)
+            assertTrue(((JSONObject) whole).similar(extract(WEATHER, chunkSize, paths)), "chunk " + chunkSize);
+    }
+
+    @Test
+    void unicodeEscapesAcrossChunks() {
+        String body = "{\"name\": \"\\u041d\\u0441\\u043a \\ud83d\\ude00\"}";
+        for (int chunkSize = 1; chunkSize <= 8; ++chunkSize)
+            assertEquals("Нск 😀", ((JSONObject) extract(body, chunkSize, "name")).getString("name"));
+    }
+
+    // число в корне заканчивается только с концом тела
+    @Test
+    void scalarRoot() {
+        assertEquals(42, extract("42", 1, ""));
+        assertEquals(-1.5e3, ((Number) extract(" -1.5e3 ", 2, "")).doubleValue());
+    }
+
+    @Test
+    void malformedBodiesFail() {
+        for (String body : new String[] { "{\"a\": 1", "{\"a\" 1}", "[1, 2}", "{\"a\": tru}", "{\"a\": \"\\x\"}", "", "{} x" }) {
+            JsonExtractor extractor = new JsonExtractor("a");
+            extractor.onSubscribe(NO_OP);
+            extractor.onNext(List.of(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8))));
+            extractor.onComplete();
+            assertThrows(CompletionException.class, () -> extractor.getBody().toCompletableFuture().join(), body);
+        }
+    }
+
+    @Test
+    void invalidUtf8Fails() {
+        byte[] body = { '{', '"', 'a', '"', ':', '"', (byte) 0xC3, '"', '}' };
+        assertThrows(CompletionException.class, () -> extract(body, 3, "a"));
+        // обрезанный в конце тела многобайтовый символ
+        byte[] truncated = Arrays.copyOf("\"Нск\"".getBytes(StandardCharsets.UTF_8), 5);
+        assertThrows(CompletionException.class, () -> extract(truncated, 1, ""));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @TempDir
+    Path dir;
+
+    private Supplier<CompletableFuture<String>> loader(String body) {
+        return () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(body);
+        };
+    }
+
+    private static String get(ResponseCache cache, String key, Supplier<CompletableFuture<String>> loader) {
+        return cache.get(ResponseCache.Endpoint.GEOCODE, key, loader).join();
+    }
+
+    // запись на диск идёт в своём потоке после ответа
+    private List<Path> awaitDiskEntries(int count) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (true) {
+            List<Path> entries;
+            try (Stream<Path> files = Files.list(dir)) {
+                entries = files.filter(path -> !path.toString().endsWith(".tmp")).toList();
+            }
+            if (entries.size() >= count || System.nanoTime() - deadline > 0)
+                return entries;
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void secondRequestIsServedFromMemory() {
+        ResponseCache cache = new ResponseCache(10, null);
+        assertEquals("moscow", get(cache, "moscow", loader("moscow")));
+        assertEquals("moscow", get(cache, "moscow", loader("other")));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio());
+    }
+
+    @Test
+    void endpointsDoNotShareKeys() {
+        ResponseCache cache = new ResponseCache(10, null);
+        cache.get(ResponseCache.Endpoint.GEOCODE, "1,2", loader("geocode")).join();
+        assertEquals("weather", cache.get(ResponseCache.Endpoint.WEATHER, "1,2", loader("weather")).join());
+        assertEquals(2, loads.get());
+    }
+
+    // вытесняется давно не читанный, а не давно записанный
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ResponseCache cache = new ResponseCache(2, null);
+        get(cache, "a", loader("a"));
+        get(cache, "b", loader("b"));
+        get(cache, "a", loader("a"));
+        get(cache, "c", loader("c"));
+        assertEquals(2, cache.getMemoryEntries());
+        assertEquals(3, loads.get());
+
+        get(cache, "a", loader("a"));
+        assertEquals(3, loads.get());
+        get(cache, "b", loader("b"));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        ResponseCache cache = new ResponseCache(10, null);
+        CompletableFuture<String> failed = cache.get(ResponseCache.Endpoint.GEOCODE, "a",
+                () -> CompletableFuture.failedFuture(new IOException("boom")));
+        assertTrue(failed.isCompletedExceptionally());
+
+        assertEquals("a", get(cache, "a", loader("a")));
+        assertEquals(0, cache.getMemoryHits());
+    }
+
+    // одновременные промахи по одному ключу - один запрос в сеть
+    @Test
+    void concurrentMissesShareOneLoad() {
+        ResponseCache cache = new ResponseCache(10, null);
+        CompletableFuture<String> response = new CompletableFuture<>();
+        Supplier<CompletableFuture<String>> slow = () -> {
+            loads.incrementAndGet();
+            return response;
+        };
+        CompletableFuture<String> first = cache.get(ResponseCache.Endpoint.GEOCODE, "a", slow);
+        CompletableFuture<String> second = cache.get(ResponseCache.Endpoint.GEOCODE, "a", slow);
+        response.complete("a");
+
+        assertEquals("a", first.join());
+        assertEquals("a", second.join());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getCoalesced());
+    }
+
+    @Test
+    void diskEntrySurvivesRestart() throws Exception {
+        ResponseCache before = new ResponseCache(10, dir);
+        get(before, "новосибирск", loader("{\"name\":\"Новосибирск\"}"));
+        assertEquals(1, awaitDiskEntries(1).size());
+
+        ResponseCache after = new ResponseCache(10, dir);
+        assertEquals("{\"name\":\"Новосибирск\"}", get(after, "новосибирск", loader("stale")));
+        assertEquals(1, loads.get());
+        assertEquals(1, after.getDiskHits());
+
+        // после чтения с диска запись уже в памяти
+        get(after, "новосибирск", loader("stale"));
+        assertEquals(1, after.getMemoryHits());
+    }
+
+    @Test
+    void clearMemoryFallsBackToDisk() throws Exception {
+        ResponseCache cache = new ResponseCache(10, dir);
+        get(cache, "a", loader("a"));
+        awaitDiskEntries(1);
+        cache.clearMemory();
+        assertEquals(0, cache.getMemoryEntries());
+
+        assertEquals("a", get(cache, "a", loader("b")));
+        assertEquals(1, cache.getDiskHits());
+    }
+
+    @Test
+    void corruptedDiskEntryIsReloaded() throws Exception {
+        ResponseCache before = new ResponseCache(10, dir);
+        get(before, "a", loader("a"));
+        Path entry = awaitDiskEntries(1).get(0);
+        Files.write(entry, new byte[] { 0, 0, 0 });
+
+        ResponseCache after = new ResponseCache(10, dir);
+        assertEquals("fresh", get(after, "a", loader("fresh")));
+        assertEquals(2, loads.get());
+        assertEquals(0, after.getDiskHits());
+    }
+}
\ No newline at end of file
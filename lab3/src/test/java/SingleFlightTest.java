@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CompletableFuture<String> run(String key, CompletableFuture<String> response) {
+        return flights.run(key, () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+    }
+
+    @Test
+    void concurrentCallsShareOneFlight() {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        CompletableFuture<String> first = run("a", response);
+        CompletableFuture<String> second = run("a", response);
+        assertEquals(1, flights.inFlight());
+
+        response.complete("value");
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals(1, calls.get());
+        assertEquals(1, flights.coalesced());
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void differentKeysFlyIndependently() {
+        run("a", new CompletableFuture<>());
+        run("b", new CompletableFuture<>());
+        assertEquals(2, calls.get());
+        assertEquals(0, flights.coalesced());
+    }
+
+    // после завершения ключ свободен, следующий вызов идёт заново
+    @Test
+    void finishedFlightIsNotReused() {
+        run("a", CompletableFuture.completedFuture("old"));
+        assertEquals("new", run("a", CompletableFuture.completedFuture("new")).join());
+        assertEquals(2, calls.get());
+    }
+
+    // каждому ожидающему - своя копия: отмена одним не задевает ни остальных, ни сам запрос
+    @Test
+    void cancellingOneCopyDoesNotAffectOthers() {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        CompletableFuture<String> first = run("a", response);
+        CompletableFuture<String> second = run("a", response);
+        CompletableFuture<String> third = run("a", response);
+        assertNotSame(first, second);
+
+        first.cancel(true);
+        second.cancel(true);
+        assertFalse(response.isDone());
+        response.complete("value");
+
+        assertTrue(first.isCancelled());
+        assertEquals("value", third.join());
+    }
+
+    @Test
+    void failureReachesEveryCallerAndFreesKey() {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        CompletableFuture<String> first = run("a", response);
+        CompletableFuture<String> second = run("a", response);
+        response.completeExceptionally(new IOException("boom"));
+
+        for (CompletableFuture<String> flight : List.of(first, second)) {
+            CompletionException error = assertThrows(CompletionException.class, flight::join);
+            assertInstanceOf(IOException.class, error.getCause());
+        }
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void throwingCallFailsAndFreesKey() {
+        CompletableFuture<String> flight = flights.run("a", () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletionException error = assertThrows(CompletionException.class, flight::join);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(0, flights.inFlight());
+    }
+}
\ No newline at end of file